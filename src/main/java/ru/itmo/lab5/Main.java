@@ -1,12 +1,18 @@
 package ru.itmo.lab5;
 
 import ru.itmo.lab5.comands.*;
+import ru.itmo.lab5.managers.AutosaveManager;
 import ru.itmo.lab5.managers.CollectionManager;
 import ru.itmo.lab5.managers.CommandManager;
 import ru.itmo.lab5.input.Console;
 import ru.itmo.lab5.input.InputSteamer;
 import ru.itmo.lab5.managers.DumpManager;
+import ru.itmo.lab5.managers.JournalManager;
+import ru.itmo.lab5.utility.ColumnarProductStore;
 import ru.itmo.lab5.utility.Executor;
+import ru.itmo.lab5.utility.LongProductMap;
+import ru.itmo.lab5.utility.OffHeapProductStore;
+import ru.itmo.lab5.utility.ProductStore;
 
 import java.util.Scanner;
 
@@ -32,18 +38,50 @@ public class Main {
             System.exit(1);
         }
         DumpManager dumpManager = new DumpManager(args[0], console);
-        CollectionManager collectionManager = new CollectionManager(dumpManager);
+
+        // Способ чтения загрузочного файла: -Dlab5.read=streaming|mapped|parallel
+        try {
+            dumpManager.setReadMode(DumpManager.ReadMode.valueOf(System.getProperty("lab5.read", "streaming").toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            console.printError("Неизвестный способ чтения файла, используется потоковое чтение");
+        }
+        JournalManager journalManager = new JournalManager(args[0] + ".journal", console);
+
+        // Способ хранения коллекции в памяти: -Dlab5.store=heap|columnar|offheap
+        ProductStore store;
+        switch (System.getProperty("lab5.store", "heap").toLowerCase()) {
+            case "heap":
+                store = new LongProductMap();
+                break;
+            case "columnar":
+                store = new ColumnarProductStore();
+                break;
+            case "offheap":
+                store = new OffHeapProductStore();
+                break;
+            default:
+                console.printError("Неизвестный способ хранения коллекции, используется хранение в куче");
+                store = new LongProductMap();
+        }
+        CollectionManager collectionManager = new CollectionManager(dumpManager, journalManager, store);
 
         // Проверка валидности коллекции и её элементов
         collectionManager.validateAll(console);
 
+        // Фоновое автосохранение: -Dlab5.autosave.interval=<секунды>, -Dlab5.autosave.mutations=<количество>
+        new AutosaveManager(collectionManager, Long.getLong("lab5.autosave.interval", 0),
+                Integer.getInteger("lab5.autosave.mutations", 0)).start();
+
         // Создание менеджера команд и добавление команд
         CommandManager commandManager = new CommandManager() {
             {
+                commandAdd("aggregate", new Aggregate(console, collectionManager));
                 commandAdd("clear", new Clear(console, collectionManager));
+                commandAdd("convert", new Convert(console, collectionManager));
                 commandAdd("count_less_than_owner", new CountLessThanOwner(console, collectionManager));
                 commandAdd("execute_script", new ExecuteScript(console));
                 commandAdd("exit", new Exit(console));
+                commandAdd("filter", new Filter(console, collectionManager));
                 commandAdd("help", new Help(console, this));
                 commandAdd("history", new History(console, this));
                 commandAdd("info", new Info(console, collectionManager));
@@ -58,6 +96,9 @@ public class Main {
                 commandAdd("update", new Update(console, collectionManager));
             }
         };
-        new Executor(console, commandManager).fromConsole();
+        Executor executor = new Executor(console, commandManager);
+        // Выполнение скриптов в транзакции: -Dlab5.script.transactional=true
+        if (Boolean.getBoolean("lab5.script.transactional")) executor.setTransactional(collectionManager);
+        executor.fromConsole();
     }
 }
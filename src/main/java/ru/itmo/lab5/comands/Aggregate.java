@@ -0,0 +1,56 @@
+package ru.itmo.lab5.comands;
+
+import ru.itmo.lab5.input.Console;
+import ru.itmo.lab5.managers.CollectionManager;
+import ru.itmo.lab5.utility.PriceAggregate;
+
+/**
+ * Команда для вывода статистики цен по группам.
+ */
+public class Aggregate extends Command {
+    private final Console console; // Консоль для взаимодействия с пользователем
+    private final CollectionManager collectionManager; // Менеджер коллекции
+
+    /**
+     * Конструктор класса.
+     *
+     * @param console            объект класса Console для взаимодействия с пользователем
+     * @param collectionManager объект класса CollectionManager для управления коллекцией
+     */
+    public Aggregate(Console console, CollectionManager collectionManager) {
+        super("aggregate <unit|country|color>", "вывести количество, сумму, минимум, максимум и среднее цены по группам");
+        this.console = console;
+        this.collectionManager = collectionManager;
+    }
+
+    /**
+     * Выполняет команду вывода статистики цен по группам.
+     *
+     * @param args аргументы команды
+     * @return true, если команда выполнена успешно, иначе false
+     */
+    @Override
+    public boolean execute(String[] args) {
+        PriceAggregate.Grouping grouping;
+        try {
+            grouping = PriceAggregate.Grouping.valueOf(args[1].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            console.println("Пожалуйста, укажите группировку: unit, country или color");
+            return false;
+        }
+
+        PriceAggregate aggregate = collectionManager.aggregatePrices(grouping);
+        console.println(String.format("%-16s%10s%14s%10s%10s%12s", "группа", "кол-во", "сумма", "мин", "макс", "среднее"));
+        for (int group = 0; group < aggregate.groups(); group++) {
+            if (aggregate.count(group) == 0) continue;
+            String label = aggregate.label(group) == null ? "(не задано)" : aggregate.label(group);
+            if (aggregate.priced(group) == 0) {
+                console.println(String.format("%-16s%10d%14s%10s%10s%12s", label, aggregate.count(group), "-", "-", "-", "-"));
+            } else {
+                console.println(String.format("%-16s%10d%14d%10d%10d%12.2f", label, aggregate.count(group),
+                        aggregate.sum(group), aggregate.min(group), aggregate.max(group), aggregate.average(group)));
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,43 @@
+package ru.itmo.lab5.comands;
+
+import ru.itmo.lab5.input.Console;
+import ru.itmo.lab5.managers.CollectionManager;
+import ru.itmo.lab5.managers.DumpManager;
+
+/**
+ * Команда для сохранения коллекции в файл другого формата.
+ * Формат определяется расширением файла: {@value DumpManager#BINARY_EXTENSION} — двоичный снимок, иначе CSV.
+ */
+public class Convert extends Command {
+    private final Console console; // Консоль для взаимодействия с пользователем
+    private final CollectionManager collectionManager; // Менеджер коллекции
+
+    /**
+     * Конструктор класса.
+     *
+     * @param console            объект класса Console для взаимодействия с пользователем
+     * @param collectionManager объект класса CollectionManager для управления коллекцией
+     */
+    public Convert(Console console, CollectionManager collectionManager) {
+        super("convert <file_name>", "сохранить коллекцию в указанный файл (.bin - двоичный снимок, иначе CSV)");
+        this.console = console;
+        this.collectionManager = collectionManager;
+    }
+
+    /**
+     * Выполняет команду сохранения коллекции в файл другого формата.
+     *
+     * @param args аргументы команды
+     * @return true, если команда выполнена успешно, иначе false
+     */
+    @Override
+    public boolean execute(String[] args) {
+        if (args[1].isEmpty()) {
+            console.println("Пожалуйста введите команду в правильном формате!");
+            return false;
+        }
+        if (!new DumpManager(args[1], console).writeCollection(collectionManager.getProducts())) return false;
+        console.println("Коллекция успешно сохранена в файл " + args[1] + "!");
+        return true;
+    }
+}
@@ -49,6 +49,8 @@ public class CountLessThanOwner extends Command {
             console.printError("Неправильное количество аргументов!");
         } catch (NumberFormatException e) {
             console.printError("Подстрока должна быть представлена числом!");
+        } catch (IllegalArgumentException e) {
+            console.printError(e.getMessage());
         }
         return false;
     }
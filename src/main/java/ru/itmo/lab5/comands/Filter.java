@@ -0,0 +1,52 @@
+package ru.itmo.lab5.comands;
+
+import ru.itmo.lab5.input.Console;
+import ru.itmo.lab5.managers.CollectionManager;
+import ru.itmo.lab5.utility.ProductQuery;
+
+/**
+ * Команда для вывода элементов коллекции, удовлетворяющих условиям на поля.
+ */
+public class Filter extends Command {
+    private final Console console; // Консоль для взаимодействия с пользователем
+    private final CollectionManager collectionManager; // Менеджер коллекции
+
+    /**
+     * Конструктор класса.
+     *
+     * @param console            объект класса Console для взаимодействия с пользователем
+     * @param collectionManager объект класса CollectionManager для управления коллекцией
+     */
+    public Filter(Console console, CollectionManager collectionManager) {
+        super("filter <conditions>", "вывести элементы, удовлетворяющие условиям (например: price>=10 unit=METERS name^=Мол limit=5)");
+        this.console = console;
+        this.collectionManager = collectionManager;
+    }
+
+    /**
+     * Выполняет команду вывода элементов, удовлетворяющих условиям.
+     *
+     * @param args аргументы команды
+     * @return true, если команда выполнена успешно, иначе false
+     */
+    @Override
+    public boolean execute(String[] args) {
+        if (args[1].isEmpty()) {
+            console.println("Пожалуйста, введите команду в правильном формате");
+            return false;
+        }
+        try {
+            ProductQuery query = ProductQuery.parse(args[1]);
+            int found = query.execute(collectionManager, console::println);
+            if (found == 0) {
+                console.println("Продуктов, удовлетворяющих условиям, не обнаружено!");
+                return true;
+            }
+            console.println("Найдено продуктов: " + found);
+            return true;
+        } catch (IllegalArgumentException e) {
+            console.printError(e.getMessage());
+            return false;
+        }
+    }
+}
@@ -42,11 +42,16 @@ public class Info extends Command {
         LocalDateTime lastSaveTime = collectionManager.getLastSaveTime();
         String lastSaveTimeStr = (lastSaveTime == null) ? "Сохранения в данной сессии еще не происходило" :
                 lastSaveTime.toLocalDate().toString() + " " + lastSaveTime.toLocalTime().toString();
+        LocalDateTime lastAutosaveTime = collectionManager.getLastAutosaveTime();
+        String lastAutosaveStr = (lastAutosaveTime == null) ? "Автосохранения в данной сессии еще не происходило" :
+                lastAutosaveTime.toLocalDate().toString() + " " + lastAutosaveTime.toLocalTime().toString() +
+                        " (длительность " + collectionManager.getLastAutosaveDuration().toMillis() + " мс)";
         console.println("Информация о коллекции:");
         console.println("Тип коллекции: " + collectionManager.getType());
         console.println("Размер коллекции (количество элементов в коллекции): " + collectionManager.getSize());
         console.println("Дата и время последней инициализации: " + lastInitTimeStr);
         console.println("Дата и время последнего сохранения: " + lastSaveTimeStr);
+        console.println("Дата и время последнего автосохранения: " + lastAutosaveStr);
         return true;
     }
 }
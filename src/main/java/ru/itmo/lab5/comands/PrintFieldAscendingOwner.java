@@ -1,13 +1,8 @@
 package ru.itmo.lab5.comands;
 
-import ru.itmo.lab5.data.Product; // Добавлен импорт
 import ru.itmo.lab5.exceptions.InvalidAmountException;
 import ru.itmo.lab5.input.Console;
 import ru.itmo.lab5.managers.CollectionManager;
-import ru.itmo.lab5.data.Person; // Добавлен импорт
-
-import java.util.Comparator;
-import java.util.Objects;
 
 /**
  * Команда для вывода полей owner всех элементов в порядке возрастания.
@@ -37,17 +32,13 @@ public class PrintFieldAscendingOwner extends Command {
     @Override
     public boolean execute(String[] args) {
         try {
-            if (args.length != 1) {
+            if (!args[1].isEmpty()) {
                 throw new InvalidAmountException();
             }
 
             StringBuilder output = new StringBuilder();
-            collectionManager.getCollection().values().stream()
-                    .map(Product::getOwner)
-                    .filter(Objects::nonNull)
-                    .distinct()
-                    .sorted(Comparator.comparing(Person::getPassportID)) // Сортировка по passportID
-                    .forEach(owner -> output.append(owner.getName()).append(System.lineSeparator()));
+            collectionManager.getOwnerNamesByPassport() // Владельцы уже упорядочены по passportID
+                    .forEach(name -> output.append(name).append(System.lineSeparator()));
 
             console.println(output.toString());
             return true;
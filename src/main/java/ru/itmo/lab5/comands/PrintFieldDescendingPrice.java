@@ -1,13 +1,9 @@
 package ru.itmo.lab5.comands;
 
-import ru.itmo.lab5.data.Product;
 import ru.itmo.lab5.exceptions.InvalidAmountException;
 import ru.itmo.lab5.input.Console;
 import ru.itmo.lab5.managers.CollectionManager;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Команда для вывода значения поля price всех элементов в порядке убывания.
  */
@@ -36,12 +32,10 @@ public class PrintFieldDescendingPrice extends Command {
     @Override
     public boolean execute(String[] args) {
         try {
-            if (args.length != 1) {
+            if (!args[1].isEmpty()) {
                 throw new InvalidAmountException();
             }
-            List<Product> productList = new ArrayList<>(collectionManager.getCollection().values());
-            productList.sort((product1, product2) -> product2.getPrice().compareTo(product1.getPrice()));
-            productList.forEach(product -> console.println(product.getPrice()));
+            collectionManager.getPricesDescending().forEach(console::println);
             return true;
         } catch (InvalidAmountException e) {
             console.printError("Неправильное количество аргументов!");
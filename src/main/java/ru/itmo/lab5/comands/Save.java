@@ -34,7 +34,8 @@ public class Save extends Command {
             console.println("Пожалуйста, введите команду в правильном формате");
             return false;
         }
-        collectionManager.saveCollection();
+        if (!collectionManager.saveCollection()) return false;
+        console.println("Коллекция успешно сохранена в файл!");
         return true;
     }
 }
@@ -47,7 +47,7 @@ public class Update extends Command {
             console.ps1();
 
             Product newProduct = (new ProductInput(console)).make();
-            product.update(newProduct);
+            collectionManager.updateProduct(id, newProduct);
 
             console.println("Продукт успешно обновлен!");
             return true;
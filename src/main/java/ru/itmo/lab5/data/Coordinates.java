@@ -9,8 +9,10 @@ import java.util.Objects;
  * Класс, представляющий координаты.
  */
 public class Coordinates implements Validateable {
-    private Integer x; // Значение поля должно быть больше -454, Поле не может быть null
-    private Double y; // Поле не может быть null
+    private int x; // Значение поля должно быть больше -454, Поле не может быть null
+    private double y; // Поле не может быть null
+    private boolean hasX; // false, если x не задан (null)
+    private boolean hasY; // false, если y не задан (null)
 
     /**
      * Конструктор класса.
@@ -19,8 +21,28 @@ public class Coordinates implements Validateable {
      * @param y координата y
      */
     public Coordinates(Integer x, Double y) {
-        this.x = x;
-        this.y = y;
+        this.hasX = x != null;
+        this.hasY = y != null;
+        this.x = hasX ? x : 0;
+        this.y = hasY ? y : 0;
+    }
+
+    /**
+     * Возвращает координату x.
+     *
+     * @return координата x
+     */
+    public Integer getX() {
+        return hasX ? x : null;
+    }
+
+    /**
+     * Возвращает координату y.
+     *
+     * @return координата y
+     */
+    public Double getY() {
+        return hasY ? y : null;
     }
 
     /**
@@ -30,7 +52,7 @@ public class Coordinates implements Validateable {
      */
     @Override
     public boolean validate() {
-        if (x == null || y == null) return false;
+        if (!hasX || !hasY) return false;
         return x > -454;
     }
 
@@ -42,8 +64,8 @@ public class Coordinates implements Validateable {
     @Override
     public String toString() {
         return "Coordinates{" +
-                "x=" + x +
-                ", y=" + y +
+                "x=" + getX() +
+                ", y=" + getY() +
                 '}';
     }
 
@@ -55,51 +77,11 @@ public class Coordinates implements Validateable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Coordinates that = (Coordinates) o;
-        return Objects.equals(x, that.x) && Objects.equals(y, that.y);
+        return Objects.equals(getX(), that.getX()) && Objects.equals(getY(), that.getY());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(x, y);
+        return Objects.hash(getX(), getY());
     }
-
-    public static Coordinates fromString(String s) {
-        try {
-            // Ищем подстроку "Coordinates"
-            int startIndex = s.indexOf("Coordinates");
-            if (startIndex == -1) {
-                throw new IllegalArgumentException("Неверный формат строки для Coordinates");
-            }
-
-            // Получаем подстроку, содержащую координаты
-            String coordSubstr = s.substring(startIndex);
-
-            // Ищем индексы начала и конца блока координат
-            int startIndexX = coordSubstr.indexOf("x=");
-            int endIndexX = coordSubstr.indexOf(",", startIndexX);
-
-            int startIndexY = coordSubstr.indexOf("y=");
-            int endIndexY = coordSubstr.indexOf("}", startIndexY);
-
-            // Извлекаем значения координат
-            Integer x = Integer.parseInt(coordSubstr.substring(startIndexX + 2, endIndexX));
-            Double y = Double.parseDouble(coordSubstr.substring(startIndexY + 2, endIndexY));
-
-            if (x <= -454) {
-                throw new IllegalArgumentException("Неверное значение для x: " + x);
-            }
-
-            if (y == null) {
-                throw new IllegalArgumentException("Неверное значение для y");
-            }
-
-            return new Coordinates(x, y);
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Ошибка преобразования строки в объект Coordinates", e);
-        }
-    }
-
-
-
-
 }
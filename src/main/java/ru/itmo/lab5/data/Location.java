@@ -25,6 +25,33 @@ public class Location implements Validateable {
         this.name = name;
     }
 
+    /**
+     * Возвращает координату X.
+     *
+     * @return координата X
+     */
+    public long getX() {
+        return x;
+    }
+
+    /**
+     * Возвращает координату Y.
+     *
+     * @return координата Y
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Возвращает название местоположения.
+     *
+     * @return название местоположения
+     */
+    public String getName() {
+        return name;
+    }
+
     /**
      * Проверяет, что местоположение валидно.
      *
@@ -119,54 +146,4 @@ public class Location implements Validateable {
             throw new IllegalArgumentException("Неизвестная ошибка при парсинге строки в объект Location", e);
         }
     }
-
-    public static Location fromString(String s) {
-        if (s == null || s.trim().isEmpty()) {
-            throw new IllegalArgumentException("Строка для парсинга Location не может быть null или пустой");
-        }
-
-        try {
-            String[] parts = s.split(" ; ");
-
-            if (parts.length != 3) {
-                throw new IllegalArgumentException("Некорректный формат строки для создания объекта Location: ожидалось 3 части, получено " + parts.length);
-            }
-
-            long x;
-            int y;
-            String name;
-
-            try {
-                x = parts[0].equals("null") ? -1 : Long.parseLong(parts[0].trim());
-                if (x < 0 && !parts[0].equals("null")) {
-                    throw new IllegalArgumentException("Значение x должно быть неотрицательным или равным null");
-                }
-            } catch (NumberFormatException e) {
-                throw new IllegalArgumentException("Некорректное значение для x: " + parts[0]);
-            }
-
-            try {
-                y = parts[1].equals("null") ? 0 : Integer.parseInt(parts[1].trim());
-                if (y < 0 && !parts[1].equals("null")) {
-                    throw new IllegalArgumentException("Значение y должно быть неотрицательным или равным null");
-                }
-            } catch (NumberFormatException e) {
-                throw new IllegalArgumentException("Некорректное значение для y: " + parts[1]);
-            }
-
-            name = parts[2].trim();
-            if (name.isEmpty()) {
-                throw new IllegalArgumentException("Название местоположения не может быть пустым");
-            }
-
-            return new Location(x, y, name);
-
-        } catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException("Ошибка при создании объекта Location из строки: " + s, e);
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Неизвестная ошибка при парсинге строки в объект Location", e);
-        }
-    }
-
-
 }
@@ -85,7 +85,7 @@ public class Person implements Validateable, Comparable<Person> {
      */
     public Person(String s) {
         try {
-            String[] parts = s.split(" ; ");
+            String[] parts = s.split(" ; ", 5);
 
             if (parts.length != 5) {
                 throw new IllegalArgumentException("Некорректный формат строки для создания объекта Person");
@@ -135,64 +135,30 @@ public class Person implements Validateable, Comparable<Person> {
         return passportID;
     }
 
-    public static Person fromString(String s) {
-        if (s == null || s.trim().isEmpty()) {
-            throw new IllegalArgumentException("Строка для парсинга Person не может быть null или пустой");
-        }
-
-        try {
-            String[] parts = s.split(", ");
-            if (parts.length != 7) {
-                throw new IllegalArgumentException("Некорректный формат строки для создания объекта Person: ожидалось 7 частей, получено " + parts.length);
-            }
-
-            String name;
-            String passportID;
-            Color hairColor;
-            Country nationality;
-            Location location;
-
-            try {
-                name = parts[0].split("=")[1].replace("'", "");
-            } catch (Exception e) {
-                throw new IllegalArgumentException("Ошибка при парсинге имени в объект Person", e);
-            }
-
-            try {
-                passportID = parts[1].split("=")[1].replace("'", "");
-            } catch (Exception e) {
-                throw new IllegalArgumentException("Ошибка при парсинге passportID в объект Person", e);
-            }
-
-            try {
-                hairColor = Color.valueOf(parts[4].split("=")[1].replace("}", ""));
-            } catch (Exception e) {
-                throw new IllegalArgumentException("Ошибка при парсинге hairColor в объект Person", e);
-            }
-
-            try {
-                nationality = Country.valueOf(parts[5]);
-            } catch (Exception e) {
-                throw new IllegalArgumentException("Ошибка при парсинге nationality в объект Person", e);
-            }
-
-            try {
-                location = Location.fromString(parts[6]);
-            } catch (Exception e) {
-                throw new IllegalArgumentException("Ошибка при парсинге location в объект Person", e);
-            }
-
-            return new Person(name, passportID, hairColor, nationality, location);
-
-        } catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException("Ошибка при создании объекта Person из строки: " + s, e);
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Неизвестная ошибка при парсинге строки в объект Person", e);
-        }
+    /**
+     * Возвращает цвет волос человека.
+     *
+     * @return цвет волос
+     */
+    public Color getHairColor() {
+        return hairColor;
     }
 
+    /**
+     * Возвращает национальность человека.
+     *
+     * @return национальность
+     */
+    public Country getNationality() {
+        return nationality;
+    }
 
-
-
-
+    /**
+     * Возвращает местоположение человека.
+     *
+     * @return местоположение
+     */
+    public Location getLocation() {
+        return location;
+    }
 }
@@ -0,0 +1,56 @@
+package ru.itmo.lab5.managers;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновое автосохранение коллекции.
+ * <p>
+ * Коллекция сохраняется в отдельном потоке, когда с последнего сохранения прошло
+ * заданное время или накопилось заданное количество изменений. Нулевое значение
+ * параметра отключает соответствующее условие.
+ */
+public class AutosaveManager {
+    /** Период проверки условий автосохранения */
+    private static final long CHECK_INTERVAL_MS = 200;
+
+    private final CollectionManager collectionManager;
+    private final long intervalMillis;
+    private final int mutationThreshold;
+    private long lastAutosave = System.currentTimeMillis();
+
+    /**
+     * Конструктор класса.
+     * @param collectionManager менеджер сохраняемой коллекции
+     * @param intervalSeconds   период автосохранения в секундах (0 - не сохранять по времени)
+     * @param mutationThreshold количество изменений, после которого коллекция сохраняется (0 - не сохранять по изменениям)
+     */
+    public AutosaveManager(CollectionManager collectionManager, long intervalSeconds, int mutationThreshold) {
+        this.collectionManager = collectionManager;
+        this.intervalMillis = TimeUnit.SECONDS.toMillis(Math.max(0, intervalSeconds));
+        this.mutationThreshold = Math.max(0, mutationThreshold);
+    }
+
+    /**
+     * Запускает фоновое автосохранение, если задано хотя бы одно условие.
+     */
+    public void start() {
+        if (intervalMillis == 0 && mutationThreshold == 0) return;
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::check, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void check() {
+        long now = System.currentTimeMillis();
+        boolean byTime = intervalMillis > 0 && now - lastAutosave >= intervalMillis;
+        boolean byMutations = mutationThreshold > 0 && collectionManager.getMutationsSinceSave() >= mutationThreshold;
+        if (byTime || byMutations) {
+            if (collectionManager.autosave()) lastAutosave = now;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ru.itmo.lab5.managers;
+
+import ru.itmo.lab5.data.Color;
+import ru.itmo.lab5.data.Coordinates;
+import ru.itmo.lab5.data.Country;
+import ru.itmo.lab5.data.Location;
+import ru.itmo.lab5.data.Person;
+import ru.itmo.lab5.data.Product;
+import ru.itmo.lab5.data.UnitOfMeasure;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static ru.itmo.lab5.managers.BinarySnapshotWriter.*;
+
+/**
+ * Читает двоичный снимок коллекции, записанный {@link BinarySnapshotWriter}.
+ * Строки снимка хранятся в общей таблице и разделяются продуктами, одинаковые
+ * владельцы разных продуктов тоже читаются в один объект.
+ */
+public class BinarySnapshotReader implements Closeable {
+    private static final UnitOfMeasure[] UNITS = UnitOfMeasure.values();
+    private static final Color[] COLORS = Color.values();
+    private static final Country[] COUNTRIES = Country.values();
+
+    private final DataInputStream in;
+    private String[] strings;
+    /** Уже прочитанные владельцы: одинаковые владельцы разных продуктов разделяют один объект */
+    private final Map<Person, Person> owners = new HashMap<>();
+
+    /**
+     * Конструктор класса.
+     * @param in поток, из которого читается снимок
+     */
+    public BinarySnapshotReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+    }
+
+    /**
+     * Читает снимок и передаёт продукты получателю.
+     * @param sink получатель продуктов
+     * @return количество прочитанных продуктов
+     * @throws IOException если файл повреждён или имеет неизвестный формат
+     */
+    public int read(Consumer<Product> sink) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Файл не является двоичным снимком коллекции");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Неподдерживаемая версия снимка: " + version);
+
+        int stringCount = in.readInt();
+        if (stringCount < 0) throw new IOException("Повреждённый размер таблицы строк: " + stringCount);
+        strings = new String[stringCount];
+        for (int i = 0; i < strings.length; i++) {
+            int length = in.readInt();
+            if (length < 0) throw new IOException("Повреждённая длина строки: " + length);
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            sink.accept(readProduct());
+        }
+        return count;
+    }
+
+    private Product readProduct() throws IOException {
+        long id = in.readLong();
+        int flags = in.readByte();
+        String name = string(in.readInt());
+        int x = in.readInt();
+        double y = in.readDouble();
+        long creationDate = in.readLong();
+        int price = in.readInt();
+        int unit = in.readByte();
+
+        Person owner = null;
+        if ((flags & HAS_OWNER) != 0) {
+            String ownerName = string(in.readInt());
+            String passportID = string(in.readInt());
+            int hairColor = in.readByte();
+            int nationality = in.readByte();
+            Location location = null;
+            if ((flags & HAS_LOCATION) != 0) {
+                location = new Location(in.readLong(), in.readInt(), string(in.readInt()));
+            }
+            owner = new Person(ownerName, passportID, constant(COLORS, hairColor, "hairColor"),
+                    constant(COUNTRIES, nationality, "nationality"), location);
+            Person known = owners.putIfAbsent(owner, owner);
+            if (known != null) owner = known;
+        }
+
+        return new Product(id, name,
+                (flags & HAS_COORDINATES) != 0 ? new Coordinates(x, y) : null,
+                Instant.ofEpochMilli(creationDate),
+                (flags & HAS_PRICE) != 0 ? price : null,
+                (flags & HAS_UNIT) != 0 ? constant(UNITS, unit, "unitOfMeasure") : null,
+                owner);
+    }
+
+    /**
+     * @return значение перечисления с порядковым номером ordinal или null для -1
+     * @throws IOException если такого значения нет
+     */
+    private static <E extends Enum<E>> E constant(E[] values, int ordinal, String field) throws IOException {
+        if (ordinal == -1) return null;
+        if (ordinal < 0 || ordinal >= values.length) throw new IOException("Повреждённое значение " + field + ": " + ordinal);
+        return values[ordinal];
+    }
+
+    private String string(int ref) throws IOException {
+        if (ref == -1) return null;
+        if (ref < 0) throw new IOException("Повреждённая ссылка на строку: " + ref);
+        if (ref >= strings.length) throw new IOException("Повреждённая ссылка на строку: " + ref);
+        return strings[ref];
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,136 @@
+package ru.itmo.lab5.managers;
+
+import ru.itmo.lab5.data.Coordinates;
+import ru.itmo.lab5.data.Location;
+import ru.itmo.lab5.data.Person;
+import ru.itmo.lab5.data.Product;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Записывает коллекцию в компактный двоичный снимок.
+ * <p>
+ * Формат (версия 1): заголовок {@code MAGIC, VERSION}, таблица строк
+ * (количество, затем длина и байты UTF-8 каждой строки), количество продуктов
+ * и записи переменной длины: поля владельца и места есть в записи, только если
+ * они отмечены в байте флагов. Строки в записях хранятся как индексы в таблице
+ * (-1 для null), перечисления как ordinal (-1 для null), дата создания как
+ * миллисекунды эпохи. Отсутствующие значения отмечаются битами в байте флагов.
+ */
+public class BinarySnapshotWriter implements Closeable {
+    /** Сигнатура файла: "LAB5" */
+    static final int MAGIC = 0x4C414235;
+    /** Версия формата */
+    static final int VERSION = 1;
+
+    static final int HAS_COORDINATES = 1;
+    static final int HAS_PRICE = 1 << 1;
+    static final int HAS_UNIT = 1 << 2;
+    static final int HAS_OWNER = 1 << 3;
+    static final int HAS_LOCATION = 1 << 4;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * Конструктор класса.
+     * @param out поток, в который записывается снимок
+     */
+    public BinarySnapshotWriter(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+    }
+
+    /**
+     * Записывает снимок коллекции.
+     * @param products продукты коллекции
+     * @throws IOException если запись не удалась
+     */
+    public void write(Collection<Product> products) throws IOException {
+        for (Product product : products) {
+            intern(product.getName());
+            Person owner = product.getOwner();
+            if (owner != null) {
+                intern(owner.getName());
+                intern(owner.getPassportID());
+                if (owner.getLocation() != null) intern(owner.getLocation().getName());
+            }
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        out.writeInt(products.size());
+        for (Product product : products) {
+            writeProduct(product);
+        }
+        out.flush();
+    }
+
+    private void writeProduct(Product product) throws IOException {
+        Coordinates coordinates = product.getCoordinates();
+        Person owner = product.getOwner();
+        Location location = owner == null ? null : owner.getLocation();
+        boolean hasCoordinates = coordinates != null && coordinates.getX() != null && coordinates.getY() != null;
+
+        int flags = 0;
+        if (hasCoordinates) flags |= HAS_COORDINATES;
+        if (product.getPrice() != null) flags |= HAS_PRICE;
+        if (product.getUnitOfMeasure() != null) flags |= HAS_UNIT;
+        if (owner != null) flags |= HAS_OWNER;
+        if (location != null) flags |= HAS_LOCATION;
+
+        out.writeLong(product.getId());
+        out.writeByte(flags);
+        out.writeInt(ref(product.getName()));
+        out.writeInt(hasCoordinates ? coordinates.getX() : 0);
+        out.writeDouble(hasCoordinates ? coordinates.getY() : 0);
+        out.writeLong(product.getCreationTime());
+        out.writeInt(product.getPrice() == null ? 0 : product.getPrice());
+        out.writeByte(product.getUnitOfMeasure() == null ? -1 : product.getUnitOfMeasure().ordinal());
+
+        if (owner != null) {
+            out.writeInt(ref(owner.getName()));
+            out.writeInt(ref(owner.getPassportID()));
+            out.writeByte(owner.getHairColor() == null ? -1 : owner.getHairColor().ordinal());
+            out.writeByte(owner.getNationality() == null ? -1 : owner.getNationality().ordinal());
+            if (location != null) {
+                out.writeLong(location.getX());
+                out.writeInt(location.getY());
+                out.writeInt(ref(location.getName()));
+            }
+        }
+    }
+
+    private void intern(String s) {
+        if (s != null && !stringIndex.containsKey(s)) {
+            stringIndex.put(s, strings.size());
+            strings.add(s);
+        }
+    }
+
+    private int ref(String s) {
+        return s == null ? -1 : stringIndex.get(s);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -3,33 +3,131 @@ package ru.itmo.lab5.managers;
 import ru.itmo.lab5.data.Person;
 import ru.itmo.lab5.data.Product;
 import ru.itmo.lab5.input.Console;
+import ru.itmo.lab5.utility.DistinctOwnerView;
+import ru.itmo.lab5.utility.LongKeyIndex;
+import ru.itmo.lab5.utility.LongProductMap;
+import ru.itmo.lab5.utility.OwnerRankIndex;
+import ru.itmo.lab5.utility.PriceAggregate;
+import ru.itmo.lab5.utility.PriceIndex;
+import ru.itmo.lab5.utility.ProductStore;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Hashtable;
-import java.util.Map;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 /**
- * Класс для управления коллекцией продуктов
+ * Класс для управления коллекцией продуктов.
+ * <p>
+ * Продукты хранятся в {@link ProductStore}: по умолчанию в хеш-таблице с примитивными
+ * ключами {@link LongProductMap}, либо в столбцовом хранилище.
+ * Изменения упорядочиваются блокировкой {@code mutationLock}, чтобы порядок записей
+ * в журнале совпадал с порядком изменений, а сама таблица меняется под записывающей
+ * блокировкой {@code tableLock}. Чтение отдельных элементов выполняется оптимистично,
+ * без захвата блокировок, и повторяется под читающей блокировкой, только если
+ * пересеклось с изменением. Команды, которым нужны все элементы, получают
+ * согласованный снимок через {@link #getProducts()}.
+ * <p>
+ * Снимки для вывода и сохранения строятся на версиях коллекции ({@link Version}):
+ * версия регистрируется за O(1), а изменения после регистрации сохраняют в ней прежние
+ * значения ключей. Поэтому длинный обход или запись на диск не держат блокировок
+ * и не задерживают изменения дольше, чем на чтение одной порции ключей.
+ * <p>
+ * Изменения можно объединить в транзакцию ({@link #beginTransaction()}). Изменения
+ * открытой транзакции копятся в ней самой, а таблица и индексы до фиксации не меняются:
+ * поток, открывший транзакцию, читает коллекцию вместе с ними, а другие потоки
+ * и сохранения видят коллекцию без них. Фиксация применяет транзакцию к таблице
+ * под одним захватом записывающей блокировки, поэтому остальные читатели видят её
+ * целиком или не видят совсем; отмена просто отбрасывает накопленное. Записи журнала
+ * транзакции копятся в памяти и при фиксации дописываются одной записью.
+ * <p>
+ * Ключи дополнительно хранятся в упорядоченном индексе {@link LongKeyIndex}: он даёт
+ * последний ключ за O(1), удаление диапазона ключей без обхода всей коллекции
+ * и обход элементов в порядке ключей. Индекс {@link PriceIndex} упорядочивает продукты
+ * по цене и названию для вывода цен и удаления превышающих элементов, а
+ * {@link OwnerRankIndex} считает владельцев меньше заданного за O(log n).
+ * {@link DistinctOwnerView} хранит различных владельцев в порядке номера паспорта.
  */
 public class CollectionManager {
+    /** Количество ключей, читаемых версией за один захват блокировки */
+    private static final int VERSION_BATCH = 4096;
+    /** Количество продуктов, читаемых поиском за один захват блокировки */
+    private static final int FIND_BATCH = 4096;
+    /** Размер пакета удаления, начиная с которого продукты пакета читаются параллельно */
+    private static final int PARALLEL_BATCH = 4096;
+
     /** Коллекция продуктов */
-    private final Hashtable<Long, Product> collection = new Hashtable<>();
+    private final ProductStore collection;
+    /** Блокировка таблицы для оптимистичного чтения без блокировок */
+    private final StampedLock tableLock = new StampedLock();
+    /** Упорядоченный индекс ключей коллекции */
+    private final LongKeyIndex keyIndex = new LongKeyIndex();
+    /** Индекс продуктов по цене и названию */
+    private final PriceIndex priceIndex = new PriceIndex();
+    /** Индекс владельцев для подсчёта ранга */
+    private final OwnerRankIndex ownerIndex = new OwnerRankIndex();
+    /** Различные владельцы в порядке номера паспорта */
+    private final DistinctOwnerView ownerView = new DistinctOwnerView();
+    /** Открытые версии коллекции; меняется под записывающей блокировкой таблицы */
+    private final List<Version> versions = new ArrayList<>();
+    /** Открытая транзакция или null; меняется под {@code mutationLock}, читается и без неё */
+    private volatile Transaction transaction;
+    /** Блокировка, упорядочивающая изменения коллекции */
+    private final Object mutationLock = new Object();
+    /** Ключи, добавленные, изменённые или удалённые с момента последнего сохранения */
+    private final Set<Long> dirtyKeys = new HashSet<>();
     /** Время последней инициализации коллекции */
     private LocalDateTime lastInitTime;
     /** Время последнего сохранения коллекции */
     private LocalDateTime lastSaveTime;
+    /** Количество изменений с момента последнего снятого для сохранения снимка */
+    private int mutationsSinceSave = 0;
+    /** Время последнего успешного автосохранения */
+    private volatile LocalDateTime lastAutosaveTime;
+    /** Длительность последнего успешного автосохранения */
+    private volatile Duration lastAutosaveDuration;
+    /** Блокировка, упорядочивающая сохранения из разных потоков */
+    private final Object saveLock = new Object();
     /** Менеджер для сохранения/загрузки коллекции */
     private final DumpManager dumpManager;
+    /** Журнал изменений коллекции */
+    private final JournalManager journal;
 
     /**
      * Конструктор класса.
      * @param dumpManager Менеджер для сохранения/загрузки коллекции
+     * @param journal     Журнал изменений коллекции
      */
-    public CollectionManager(DumpManager dumpManager) {
+    public CollectionManager(DumpManager dumpManager, JournalManager journal) {
+        this(dumpManager, journal, new LongProductMap());
+    }
+
+    /**
+     * Конструктор класса.
+     * @param dumpManager Менеджер для сохранения/загрузки коллекции
+     * @param journal     Журнал изменений коллекции
+     * @param store       Хранилище продуктов в памяти
+     */
+    public CollectionManager(DumpManager dumpManager, JournalManager journal, ProductStore store) {
+        this.collection = store;
         this.lastInitTime = null;
         this.lastSaveTime = null;
         this.dumpManager = dumpManager;
+        this.journal = journal;
 
         loadCollection();
     }
@@ -37,11 +135,251 @@ public class CollectionManager {
     // Методы доступа к коллекции и времени инициализации/сохранения
 
     /**
-     * Получает коллекцию продуктов.
-     * @return Коллекция продуктов
+     * Возвращает согласованный снимок продуктов коллекции: в него целиком входят
+     * все изменения, завершившиеся до вызова, и не входит ни одно начатое после.
+     * Снимок можно свободно обходить и сортировать, коллекция при этом не блокируется.
+     * @return Список продуктов коллекции в порядке возрастания ключей
+     */
+    public List<Product> getProducts() {
+        Transaction own = ownTransaction();
+        if (own != null) return own.products(Long.MIN_VALUE, Long.MAX_VALUE);
+        Version version = openVersion();
+        try {
+            return version.products();
+        } finally {
+            closeVersion(version);
+        }
+    }
+
+    /**
+     * Возвращает согласованный снимок продуктов, ключи которых лежат в заданном диапазоне.
+     * @param fromKey Нижняя граница ключа (включительно)
+     * @param toKey   Верхняя граница ключа (включительно)
+     * @return Список продуктов в порядке возрастания ключей
+     */
+    public List<Product> getProducts(long fromKey, long toKey) {
+        Transaction own = ownTransaction();
+        if (own != null) return own.products(fromKey, toKey);
+        long stamp = tableLock.readLock();
+        try {
+            List<Product> products = new ArrayList<>();
+            keyIndex.forEachInRange(fromKey, toKey, key -> products.add(collection.get(key)));
+            return products;
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Передаёт получателю продукты с ключом в диапазоне [fromKey, toKey], удовлетворяющие
+     * условию, проходя только этот диапазон индекса ключей.
+     * @param fromKey Нижняя граница ключа (включительно)
+     * @param toKey   Верхняя граница ключа (включительно)
+     * @param filter  Условие на продукт
+     * @param limit   Наибольшее количество продуктов
+     * @param sink    Получатель продуктов в порядке возрастания ключей
+     * @return Количество переданных продуктов
+     */
+    public int findByKey(long fromKey, long toKey, Predicate<Product> filter, int limit, Consumer<Product> sink) {
+        Transaction own = ownTransaction();
+        if (own != null) return emit(own.products(fromKey, toKey), filter, limit, sink);
+        return find(filter, limit, sink, false, (last, batch) -> readKeys(fromKey, toKey, last, batch));
+    }
+
+    /**
+     * Передаёт получателю продукты с ценой в диапазоне [fromPrice, toPrice], удовлетворяющие
+     * условию, проходя только этот диапазон индекса цен.
+     * @param fromPrice Нижняя граница цены (включительно)
+     * @param toPrice   Верхняя граница цены (включительно)
+     * @param filter    Условие на продукт
+     * @param limit     Наибольшее количество продуктов
+     * @param sink      Получатель продуктов в порядке возрастания цены
+     * @return Количество переданных продуктов
+     */
+    public int findByPrice(int fromPrice, int toPrice, Predicate<Product> filter, int limit, Consumer<Product> sink) {
+        Transaction own = ownTransaction();
+        if (own != null) return emit(own.productsByPrice(fromPrice, toPrice), filter, limit, sink);
+        return find(filter, limit, sink, false, (last, batch) -> {
+            priceIndex.forEachInRangeWhile(fromPrice, toPrice, last, key -> {
+                batch.add(collection.get(key));
+                return batch.size() < FIND_BATCH;
+            });
+            return batch.size() == FIND_BATCH;
+        });
+    }
+
+    /**
+     * Считает продукты с ключом в диапазоне [fromKey, toKey], останавливаясь на limit.
+     * @param fromKey Нижняя граница ключа (включительно)
+     * @param toKey   Верхняя граница ключа (включительно)
+     * @param limit   Наибольшее значение результата
+     * @return Количество продуктов, но не больше limit
+     */
+    public int countByKey(long fromKey, long toKey, int limit) {
+        Transaction own = ownTransaction();
+        if (own != null) return Math.min(own.keys(fromKey, toKey).length, limit);
+        int[] count = {0};
+        long stamp = tableLock.readLock();
+        try {
+            keyIndex.forEachInRangeWhile(fromKey, toKey, key -> ++count[0] < limit);
+            return count[0];
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Считает продукты с ценой в диапазоне [fromPrice, toPrice], останавливаясь на limit.
+     * @param fromPrice Нижняя граница цены (включительно)
+     * @param toPrice   Верхняя граница цены (включительно)
+     * @param limit     Наибольшее значение результата
+     * @return Количество продуктов, но не больше limit
+     */
+    public int countByPrice(int fromPrice, int toPrice, int limit) {
+        Transaction own = ownTransaction();
+        if (own != null) return Math.min(own.productsByPrice(fromPrice, toPrice).size(), limit);
+        int[] count = {0};
+        long stamp = tableLock.readLock();
+        try {
+            priceIndex.forEachInRangeWhile(fromPrice, toPrice, key -> ++count[0] < limit);
+            return count[0];
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Передаёт получателю продукты, удовлетворяющие условию, просматривая всю коллекцию
+     * в порядке ключей. Условие проверяется на каждой порции параллельно; просмотр
+     * прекращается, как только найдено limit продуктов.
+     * @param filter Условие на продукт
+     * @param limit  Наибольшее количество продуктов
+     * @param sink   Получатель продуктов в порядке возрастания ключей
+     * @return Количество переданных продуктов
+     */
+    public int find(Predicate<Product> filter, int limit, Consumer<Product> sink) {
+        Transaction own = ownTransaction();
+        if (own != null) return emit(own.products(Long.MIN_VALUE, Long.MAX_VALUE), filter, limit, sink);
+        return find(filter, limit, sink, true, (last, batch) -> readKeys(Long.MIN_VALUE, Long.MAX_VALUE, last, batch));
+    }
+
+    /**
+     * Читает порции продуктов под читающей блокировкой и передаёт найденные получателю
+     * после её снятия, поэтому получатель может долго выводить результаты, не задерживая
+     * изменения, и сам обращаться к коллекции. Изменения между порциями видны поиску.
+     * @param parallel проверять ли условие на порции параллельно
+     * @param reader   чтение следующей порции
+     */
+    private int find(Predicate<Product> filter, int limit, Consumer<Product> sink, boolean parallel, BatchReader reader) {
+        List<Product> batch = new ArrayList<>(FIND_BATCH);
+        int found = 0;
+        boolean more = true;
+        Product last = null;
+        while (more && found < limit) {
+            batch.clear();
+            long stamp = tableLock.readLock();
+            try {
+                more = reader.read(last, batch);
+            } finally {
+                tableLock.unlockRead(stamp);
+            }
+            if (batch.isEmpty()) break;
+            last = batch.get(batch.size() - 1);
+
+            List<Product> matches = parallel
+                    ? batch.parallelStream().filter(filter).collect(Collectors.toList())
+                    : batch.stream().filter(filter).collect(Collectors.toList());
+            for (Product product : matches) {
+                if (found == limit) break;
+                sink.accept(product);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Передаёт получателю не больше limit продуктов списка, удовлетворяющих условию.
+     */
+    private static int emit(List<Product> products, Predicate<Product> filter, int limit, Consumer<Product> sink) {
+        int found = 0;
+        for (Product product : products) {
+            if (found == limit) break;
+            if (!filter.test(product)) continue;
+            sink.accept(product);
+            found++;
+        }
+        return found;
+    }
+
+    /**
+     * Читает порцию продуктов с ключами из [fromKey, toKey], следующими за продуктом last.
+     * @return true, если в диапазоне могут остаться непрочитанные ключи
+     */
+    private boolean readKeys(long fromKey, long toKey, Product last, List<Product> batch) {
+        if (last != null && last.getId() >= toKey) return false;
+        long from = last == null ? fromKey : last.getId() + 1;
+        return keyIndex.forEachInRange(from, toKey, FIND_BATCH, key -> batch.add(collection.get(key))) == FIND_BATCH;
+    }
+
+    /**
+     * Считает статистику цен по группам параллельной свёрткой под читающей блокировкой.
+     * @param grouping Поле группировки
+     * @return Статистика цен
      */
-    public Hashtable<Long, Product> getCollection() {
-        return collection;
+    public PriceAggregate aggregatePrices(PriceAggregate.Grouping grouping) {
+        Transaction own = ownTransaction();
+        if (own != null) return PriceAggregate.of(own.products(Long.MIN_VALUE, Long.MAX_VALUE), grouping);
+        long stamp = tableLock.readLock();
+        try {
+            return collection.aggregatePrices(grouping);
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Возвращает цены всех продуктов в порядке убывания.
+     * @return Список цен (null для продуктов без цены)
+     */
+    public List<Integer> getPricesDescending() {
+        Transaction own = ownTransaction();
+        if (own != null) {
+            List<Integer> prices = new ArrayList<>();
+            own.priceIndex().descendingPrices().forEachRemaining(prices::add);
+            return prices;
+        }
+        long stamp = tableLock.readLock();
+        try {
+            List<Integer> prices = new ArrayList<>(priceIndex.size());
+            priceIndex.descendingPrices().forEachRemaining(prices::add);
+            return prices;
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Возвращает имена различных владельцев в порядке возрастания номера паспорта.
+     * @return Список имён владельцев
+     */
+    public List<String> getOwnerNamesByPassport() {
+        Transaction own = ownTransaction();
+        if (own != null) {
+            DistinctOwnerView view = new DistinctOwnerView();
+            own.owners().forEach(view::add);
+            List<String> names = new ArrayList<>(view.size());
+            view.forEachName(names::add);
+            return names;
+        }
+        long stamp = tableLock.readLock();
+        try {
+            List<String> names = new ArrayList<>(ownerView.size());
+            ownerView.forEachName(names::add);
+            return names;
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
     }
 
     /**
@@ -60,6 +398,32 @@ public class CollectionManager {
         return lastSaveTime;
     }
 
+    /**
+     * Получает время последнего успешного автосохранения.
+     * @return Время последнего автосохранения или null, если его ещё не было
+     */
+    public LocalDateTime getLastAutosaveTime() {
+        return lastAutosaveTime;
+    }
+
+    /**
+     * Получает длительность последнего успешного автосохранения.
+     * @return Длительность последнего автосохранения или null, если его ещё не было
+     */
+    public Duration getLastAutosaveDuration() {
+        return lastAutosaveDuration;
+    }
+
+    /**
+     * Возвращает количество изменений коллекции, ещё не попавших в сохранение.
+     * @return Количество несохранённых изменений
+     */
+    public int getMutationsSinceSave() {
+        synchronized (mutationLock) {
+            return mutationsSinceSave;
+        }
+    }
+
     /**
      * Возвращает тип коллекции.
      * @return Тип коллекции
@@ -73,7 +437,17 @@ public class CollectionManager {
      * @return Размер коллекции
      */
     public int getSize() {
-        return collection.size();
+        Transaction own = ownTransaction();
+        if (own != null) return own.size();
+        long stamp = tableLock.tryOptimisticRead();
+        int size = collection.size();
+        if (tableLock.validate(stamp)) return size;
+        stamp = tableLock.readLock();
+        try {
+            return collection.size();
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
     }
 
     /**
@@ -81,8 +455,17 @@ public class CollectionManager {
      * @return Последний добавленный продукт
      */
     public Product getLast() {
-        if (collection.isEmpty()) return null;
-        return collection.get(collection.keySet().stream().max(Long::compareTo).orElse(null));
+        Transaction own = ownTransaction();
+        if (own != null) {
+            long[] keys = own.keys(Long.MIN_VALUE, Long.MAX_VALUE);
+            return keys.length == 0 ? null : own.get(keys[keys.length - 1]);
+        }
+        long stamp = tableLock.readLock();
+        try {
+            return keyIndex.isEmpty() ? null : collection.get(keyIndex.last());
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
     }
 
     /**
@@ -91,7 +474,23 @@ public class CollectionManager {
      * @return Продукт с указанным ключом
      */
     public Product getById(long id) {
-        return collection.get(id);
+        Transaction own = ownTransaction();
+        if (own != null) return own.get(id);
+        long stamp = tableLock.tryOptimisticRead();
+        Product product = null;
+        try {
+            product = collection.get(id);
+        } catch (RuntimeException e) {
+            // Хранилище менялось во время чтения; повторяем под блокировкой
+            stamp = 0;
+        }
+        if (stamp != 0 && tableLock.validate(stamp)) return product;
+        stamp = tableLock.readLock();
+        try {
+            return collection.get(id);
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
     }
 
     // Методы для управления коллекцией
@@ -101,40 +500,500 @@ public class CollectionManager {
      * @param product Добавляемый продукт
      */
     public void addToCollection(Product product) {
-        collection.put(product.getId(), product);
+        synchronized (mutationLock) {
+            put(product);
+            journal.insert(product);
+        }
+    }
+
+    /**
+     * Заменяет продукт с указанным ключом новым значением.
+     * @param id      Ключ продукта
+     * @param product Новое значение продукта
+     */
+    public void updateProduct(long id, Product product) {
+        product.setId(id);
+        synchronized (mutationLock) {
+            put(product);
+            journal.update(product);
+        }
     }
 
     /**
      * Очищает коллекцию продуктов.
      */
     public void clearCollection() {
-        collection.clear();
+        synchronized (mutationLock) {
+            clear();
+            journal.clear();
+        }
+    }
+
+    /**
+     * Начинает транзакцию в текущем потоке. Все последующие изменения копятся в ней:
+     * их видит только этот поток, а в таблицу, журнал и сохранения они попадают
+     * только после {@link #commitTransaction()}.
+     * @throws IllegalStateException если транзакция уже открыта
+     */
+    public void beginTransaction() {
+        synchronized (mutationLock) {
+            if (transaction != null) throw new IllegalStateException("Транзакция уже открыта");
+            transaction = new Transaction();
+            journal.beginTransaction();
+        }
+    }
+
+    /**
+     * Проверяет, открыта ли транзакция.
+     * @return true, если транзакция открыта
+     */
+    public boolean inTransaction() {
+        synchronized (mutationLock) {
+            return transaction != null;
+        }
+    }
+
+    /**
+     * Фиксирует открытую транзакцию: её изменения применяются к таблице под одним захватом
+     * записывающей блокировки, одной записью попадают в журнал и считаются несохранёнными.
+     */
+    public void commitTransaction() {
+        synchronized (mutationLock) {
+            Transaction committed = endTransaction();
+            long stamp = tableLock.writeLock();
+            try {
+                committed.apply();
+            } finally {
+                tableLock.unlockWrite(stamp);
+            }
+            journal.commitTransaction();
+            dirtyKeys.addAll(committed.dirtyKeys);
+            mutationsSinceSave += committed.mutations;
+        }
+    }
+
+    /**
+     * Отменяет открытую транзакцию, отбрасывая накопленные в ней изменения.
+     * Таблица до фиксации не менялась, поэтому восстанавливать в ней нечего.
+     */
+    public void rollbackTransaction() {
+        synchronized (mutationLock) {
+            endTransaction();
+            journal.rollbackTransaction();
+        }
+    }
+
+    /**
+     * @return открытая транзакция, если её выполняет текущий поток, иначе null
+     */
+    private Transaction ownTransaction() {
+        Transaction current = transaction;
+        return current != null && current.owner == Thread.currentThread() ? current : null;
+    }
+
+    private Transaction endTransaction() {
+        if (transaction == null) throw new IllegalStateException("Транзакция не открыта");
+        Transaction ended = transaction;
+        transaction = null;
+        return ended;
     }
 
     /**
      * Сохраняет коллекцию продуктов.
+     * @return true, если коллекция сохранена, иначе false
      */
-    public void saveCollection() {
-        dumpManager.writeCollection(collection.values());
-        lastSaveTime = LocalDateTime.now();
+    public boolean saveCollection() {
+        synchronized (saveLock) {
+            if (!write(snapshot())) return false;
+            lastSaveTime = LocalDateTime.now();
+            return true;
+        }
+    }
+
+    /**
+     * Сохраняет коллекцию из фонового потока, если с последнего сохранения были изменения.
+     * Команды продолжают выполняться, пока снимок записывается на диск.
+     * @return true, если коллекция сохранена или сохранять было нечего, иначе false
+     */
+    public boolean autosave() {
+        synchronized (saveLock) {
+            if (getMutationsSinceSave() == 0) return true;
+            long start = System.nanoTime();
+            if (!write(snapshot())) return false;
+            lastAutosaveDuration = Duration.ofNanos(System.nanoTime() - start);
+            lastAutosaveTime = LocalDateTime.now();
+            return true;
+        }
+    }
+
+    /**
+     * Снимает согласованный снимок коллекции для сохранения. Снимок ничего не копирует,
+     * а открывает версию коллекции, поэтому стоит O(1) независимо от её размера.
+     * Незафиксированные изменения транзакции в таблице ещё не лежат и в снимок не входят.
+     */
+    private Snapshot snapshot() {
+        synchronized (mutationLock) {
+            Version version = openVersion();
+            Snapshot snapshot = new Snapshot(version, new HashSet<>(dirtyKeys),
+                    mutationsSinceSave, journal.position());
+            dirtyKeys.clear();
+            mutationsSinceSave = 0;
+            return snapshot;
+        }
+    }
+
+    /**
+     * Записывает снимок. В сегментированном хранилище перезаписываются только сегменты
+     * с изменёнными ключами. После успешной записи из журнала отбрасываются записи,
+     * вошедшие в снимок; при ошибке изменения снова считаются несохранёнными.
+     */
+    private boolean write(Snapshot snapshot) {
+        boolean saved;
+        try {
+            saved = dumpManager.isSegmented()
+                    ? dumpManager.writeSegments(snapshot.dirtyKeys, snapshot.version::get)
+                    : dumpManager.writeCollection(snapshot.version.products());
+        } finally {
+            closeVersion(snapshot.version);
+        }
+        synchronized (mutationLock) {
+            if (saved) {
+                journal.discardBefore(snapshot.journalPosition);
+            } else {
+                dirtyKeys.addAll(snapshot.dirtyKeys);
+                mutationsSinceSave += snapshot.mutations;
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Регистрирует версию коллекции, отражающую все завершённые изменения.
+     */
+    private Version openVersion() {
+        long stamp = tableLock.writeLock();
+        try {
+            Version version = new Version();
+            versions.add(version);
+            return version;
+        } finally {
+            tableLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Снимает регистрацию версии; после этого изменения перестают сохранять для неё значения.
+     */
+    private void closeVersion(Version version) {
+        long stamp = tableLock.writeLock();
+        try {
+            versions.remove(version);
+        } finally {
+            tableLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Сохраняет текущее значение ключа в открытых версиях перед его изменением.
+     * Вызывается под записывающей блокировкой таблицы.
+     */
+    private void preserve(long key) {
+        for (Version version : versions) version.preserve(key);
+    }
+
+    /**
+     * Отмечает ключ изменённым с последнего сохранения или в открытой транзакции.
+     */
+    private void markDirty(long key) {
+        if (transaction == null) dirtyKeys.add(key);
+        else transaction.dirtyKeys.add(key);
+    }
+
+    /**
+     * Учитывает изменение коллекции для автосохранения.
+     */
+    private void countMutation() {
+        if (transaction == null) mutationsSinceSave++;
+        else transaction.mutations++;
+    }
+
+    /**
+     * Кладёт продукт в коллекцию (или в открытую транзакцию) и отмечает его ключ изменённым.
+     */
+    private void put(Product product) {
+        if (transaction != null) {
+            transaction.put(product);
+        } else {
+            long stamp = tableLock.writeLock();
+            try {
+                store(product);
+            } finally {
+                tableLock.unlockWrite(stamp);
+            }
+        }
+        markDirty(product.getId());
+        countMutation();
+    }
+
+    /**
+     * Удаляет продукты с ключами меньше заданного (или больше, если below = false),
+     * отбрасывая начало или конец индекса ключей, и отмечает их ключи изменёнными.
+     */
+    private void removeKeys(long bound, boolean below) {
+        if (transaction != null) {
+            transaction.removeKeys(bound, below);
+            countMutation();
+            return;
+        }
+        long stamp = tableLock.writeLock();
+        try {
+            LongStream.Builder removed = LongStream.builder();
+            if (below) keyIndex.removeBelow(bound, removed);
+            else keyIndex.removeAbove(bound, removed);
+            removeBatch(removed.build().toArray(), false);
+        } finally {
+            tableLock.unlockWrite(stamp);
+        }
+        countMutation();
+    }
+
+    /**
+     * Удаляет продукты, превышающие заданный, отбрасывая хвост индекса цен,
+     * и отмечает их ключи изменёнными.
+     */
+    private void removeAbove(Product bound) {
+        if (transaction != null) {
+            transaction.removeAbove(bound);
+            countMutation();
+            return;
+        }
+        long stamp = tableLock.writeLock();
+        try {
+            LongStream.Builder removed = LongStream.builder();
+            priceIndex.removeGreater(bound, removed);
+            removeBatch(removed.build().toArray(), true);
+        } finally {
+            tableLock.unlockWrite(stamp);
+        }
+        countMutation();
+    }
+
+    /**
+     * Удаляет из таблицы пакет продуктов, уже убранных из индекса ключей
+     * (или из индекса цен, если byPrice = true), и отмечает их ключи изменёнными.
+     * <p>
+     * Продукты пакета читаются из таблицы параллельно, хранилище удаляет их одним пакетом.
+     * Если удалена большая часть коллекции, вторичные индексы перестраиваются по оставшимся
+     * продуктам, иначе каждый индекс снимает весь пакет за один проход. Индексы независимы
+     * друг от друга и обновляются в отдельных задачах.
+     * Вызывается под записывающей блокировкой таблицы.
+     */
+    private void removeBatch(long[] keys, boolean byPrice) {
+        if (keys.length == 0) return;
+        for (long key : keys) preserve(key);
+        Product[] removed = read(keys);
+        collection.removeAll(keys);
+        if (byPrice) keyIndex.removeAll(sorted(keys));
+
+        if (keys.length > collection.size()) {
+            reindex(!byPrice);
+        } else {
+            Person[] owners = owners(removed);
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            if (!byPrice) tasks.add(ForkJoinTask.adapt(() -> priceIndex.removeAll(removed)));
+            tasks.add(ForkJoinTask.adapt(() -> ownerIndex.removeAll(owners)));
+            tasks.add(ForkJoinTask.adapt(() -> ownerView.removeAll(owners)));
+            ForkJoinTask.invokeAll(tasks);
+        }
+        for (long key : keys) markDirty(key);
+    }
+
+    /**
+     * Перестраивает вторичные индексы по продуктам, оставшимся в индексе ключей.
+     * Вызывается под записывающей блокировкой таблицы.
+     * @param prices перестраивать ли индекс цен
+     */
+    private void reindex(boolean prices) {
+        LongStream.Builder survivors = LongStream.builder();
+        keyIndex.forEach(survivors);
+        Product[] products = read(survivors.build().toArray());
+        Person[] owners = owners(products);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        if (prices) tasks.add(ForkJoinTask.adapt(() -> {
+            priceIndex.clear();
+            for (Product product : products) priceIndex.add(product);
+        }));
+        tasks.add(ForkJoinTask.adapt(() -> {
+            ownerIndex.clear();
+            for (Person owner : owners) ownerIndex.add(owner);
+        }));
+        tasks.add(ForkJoinTask.adapt(() -> {
+            ownerView.clear();
+            for (Person owner : owners) ownerView.add(owner);
+        }));
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    /**
+     * Читает продукты по ключам, большой пакет — параллельно.
+     * Вызывается под записывающей блокировкой таблицы, поэтому чтения не пересекаются с изменениями.
+     */
+    private Product[] read(long[] keys) {
+        Product[] products = new Product[keys.length];
+        IntStream indices = IntStream.range(0, keys.length);
+        if (keys.length >= PARALLEL_BATCH) indices = indices.parallel();
+        indices.forEach(i -> products[i] = collection.get(keys[i]));
+        return products;
+    }
+
+    private static Person[] owners(Product[] products) {
+        return Arrays.stream(products).map(Product::getOwner).filter(Objects::nonNull).toArray(Person[]::new);
+    }
+
+    private static long[] sorted(long[] keys) {
+        long[] sorted = keys.clone();
+        Arrays.parallelSort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Очищает коллекцию и отмечает все ключи изменёнными.
+     */
+    private void clear() {
+        if (transaction != null) {
+            transaction.clear();
+            countMutation();
+            return;
+        }
+        long stamp = tableLock.writeLock();
+        try {
+            keyIndex.forEach(key -> {
+                preserve(key);
+                markDirty(key);
+            });
+            clearTables();
+        } finally {
+            tableLock.unlockWrite(stamp);
+        }
+        countMutation();
+    }
+
+    /**
+     * Очищает таблицу и все индексы. Вызывается под записывающей блокировкой таблицы.
+     */
+    private void clearTables() {
+        collection.clear();
+        keyIndex.clear();
+        priceIndex.clear();
+        ownerIndex.clear();
+        ownerView.clear();
+    }
+
+    /**
+     * Кладёт продукт в таблицу и обновляет индексы. Вызывается под записывающей блокировкой таблицы.
+     */
+    private void store(Product product) {
+        preserve(product.getId());
+        Product previous = collection.put(product.getId(), product);
+        if (previous == null) keyIndex.add(product.getId());
+        else unindex(previous);
+        priceIndex.add(product);
+        if (product.getOwner() != null) {
+            ownerIndex.add(product.getOwner());
+            ownerView.add(product.getOwner());
+        }
+    }
+
+    /**
+     * Убирает удалённый из таблицы продукт из вторичных индексов.
+     */
+    private void unindex(Product product) {
+        priceIndex.remove(product);
+        if (product.getOwner() != null) {
+            ownerIndex.remove(product.getOwner());
+            ownerView.remove(product.getOwner());
+        }
     }
 
     /**
      * Загружает коллекцию продуктов.
      */
     private void loadCollection() {
-        Map<Long, Product> loadedCollection = dumpManager.readCollection().stream()
-                .collect(Collectors.toMap(Product::getId, product -> product));
-        collection.putAll(loadedCollection);
+        synchronized (mutationLock) {
+            dumpManager.readCollection(product -> {
+                long stamp = tableLock.writeLock();
+                try {
+                    store(product);
+                } finally {
+                    tableLock.unlockWrite(stamp);
+                }
+            }, () -> {
+                long stamp = tableLock.writeLock();
+                try {
+                    clearTables();
+                } finally {
+                    tableLock.unlockWrite(stamp);
+                }
+            });
+            dumpManager.refreshCache(tableView());
+        }
+        journal.replay(this::applyRecord);
         lastInitTime = LocalDateTime.now();
     }
 
+    /**
+     * Представление таблицы в порядке ключей, которое собирает продукты при обходе
+     * и не держит их все в памяти. Используется при загрузке, пока коллекцию
+     * не меняют другие потоки.
+     */
+    private Collection<Product> tableView() {
+        LongStream.Builder builder = LongStream.builder();
+        keyIndex.forEach(builder);
+        long[] keys = builder.build().toArray();
+        return new AbstractCollection<Product>() {
+            @Override
+            public Iterator<Product> iterator() {
+                return Arrays.stream(keys).mapToObj(collection::get).iterator();
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+    /**
+     * Применяет к коллекции запись журнала изменений, не записывая её повторно.
+     * @param record Запись журнала
+     */
+    private void applyRecord(JournalManager.Record record) {
+        switch (record.getType()) {
+            case INSERT:
+            case UPDATE:
+                put(record.getProduct());
+                break;
+            case CLEAR:
+                clear();
+                break;
+            case REMOVE_GREATER:
+                removeAbove(record.getProduct());
+                break;
+            case REMOVE_GREATER_KEY:
+                removeKeys(record.getKey(), false);
+                break;
+            case REMOVE_LOWER_KEY:
+                removeKeys(record.getKey(), true);
+                break;
+        }
+    }
+
     /**
      * Проверяет валидность всех продуктов в коллекции.
      * @param console Консоль для вывода сообщений об ошибках
      */
     public void validateAll(Console console) {
-        collection.values().stream()
+        getProducts().stream()
                 .filter(product -> !product.validate())
                 .forEach(product -> console.println("Продукт с id = " + product.getId() + " имеет невалидные поля."));
         console.println("> Загруженные продукты валидны.");
@@ -142,13 +1001,13 @@ public class CollectionManager {
 
     @Override
     public String toString() {
-        if (collection.isEmpty()) return "Коллекция пуста!";
-        Product last = getLast();
+        List<Product> products = getProducts();
+        if (products.isEmpty()) return "Коллекция пуста!";
 
         StringBuilder info = new StringBuilder();
-        for (Product product : collection.values()) {
+        for (Product product : products) {
+            if (info.length() > 0) info.append("\n\n");
             info.append(product);
-            if (product != last) info.append("\n\n");
         }
         return info.toString();
     }
@@ -158,7 +1017,10 @@ public class CollectionManager {
      * @param product Продукт, с которым сравниваются ключи
      */
     public void removeLowerKey(Product product) {
-        collection.entrySet().removeIf(entry -> entry.getKey() < product.getId());
+        synchronized (mutationLock) {
+            removeKeys(product.getId(), true);
+            journal.removeLowerKey(product.getId());
+        }
     }
 
     /**
@@ -166,7 +1028,10 @@ public class CollectionManager {
      * @param product Продукт, с которым сравниваются ключи
      */
     public void removeGreaterKey(Product product) {
-        collection.entrySet().removeIf(entry -> entry.getKey() > product.getId());
+        synchronized (mutationLock) {
+            removeKeys(product.getId(), false);
+            journal.removeGreaterKey(product.getId());
+        }
     }
 
     /**
@@ -174,18 +1039,31 @@ public class CollectionManager {
      * @param product Продукт, с которым сравниваются элементы коллекции
      */
     public void removeGreater(Product product) {
-        collection.values().removeIf(p -> p.compareTo(product) > 0);
+        synchronized (mutationLock) {
+            removeAbove(product);
+            journal.removeGreater(product);
+        }
     }
 
     /**
      * Возвращает количество продуктов, у которых владелец меньше заданного.
+     * Ответ даёт запрос ранга к индексу владельцев, без обхода коллекции.
      * @param owner Владелец, с которым сравнивается владелец каждого продукта
      * @return Количество продуктов, у которых владелец меньше заданного
      */
     public Integer countLessThanOwner(Person owner) {
-        return (int) collection.values().stream()
-                .filter(product -> product.getOwner().compareTo(owner) < 0)
-                .count();
+        Transaction own = ownTransaction();
+        if (own != null) {
+            OwnerRankIndex index = new OwnerRankIndex();
+            own.owners().forEach(index::add);
+            return index.rank(owner);
+        }
+        long stamp = tableLock.readLock();
+        try {
+            return ownerIndex.rank(owner);
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
     }
 
     /**
@@ -194,6 +1072,290 @@ public class CollectionManager {
      * @return true, если коллекция содержит элемент с указанным ключом, иначе false
      */
     public boolean contains(Long key) {
-        return collection.containsKey(key);
+        return key != null && getById(key) != null;
+    }
+
+    /**
+     * Версия коллекции на момент регистрации.
+     * <p>
+     * Версия не копирует коллекцию. Перед первым изменением ключа после регистрации
+     * его прежнее значение сохраняется в журнале отката версии (или ключ отмечается
+     * отсутствовавшим), и чтение версии берёт значение оттуда, а остальные ключи
+     * читает из таблицы. Обход идёт порциями по {@value #VERSION_BATCH} ключей под
+     * читающей блокировкой; ключи, которые обход уже прошёл, больше не сохраняются,
+     * так что журнал отката содержит только изменения, пересёкшиеся с обходом.
+     */
+    private class Version {
+        /** Прежние значения ключей, изменённых после регистрации */
+        private final LongProductMap undo;
+        /** Ключи, которых не было в коллекции в момент регистрации */
+        private final LongKeyIndex absent = new LongKeyIndex();
+        /** Ключи меньше этого обход уже прошёл */
+        private long cursor = Long.MIN_VALUE;
+        /** Обход завершён, значения больше не сохраняются */
+        private boolean scanned;
+
+        private Version() {
+            undo = new LongProductMap();
+        }
+
+        /**
+         * Сохраняет текущее значение ключа, если версия ещё может его прочитать.
+         * Вызывается под записывающей блокировкой таблицы.
+         */
+        private void preserve(long key) {
+            if (scanned || key < cursor || undo.containsKey(key) || absent.contains(key)) return;
+            Product current = collection.get(key);
+            if (current == null) absent.add(key);
+            else undo.put(key, current);
+        }
+
+        /**
+         * Возвращает продукт версии по ключу. Может вызываться из нескольких потоков,
+         * пока версия не обходится.
+         */
+        private Product get(long key) {
+            long stamp = tableLock.readLock();
+            try {
+                Product previous = undo.get(key);
+                if (previous != null) return previous;
+                return absent.contains(key) ? null : collection.get(key);
+            } finally {
+                tableLock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Обходит версию и возвращает её продукты в порядке возрастания ключей.
+         * Версию можно обойти только один раз.
+         */
+        private List<Product> products() {
+            List<Product> products = new ArrayList<>(getSize());
+            long[] last = {Long.MIN_VALUE};
+            while (!scanned) {
+                long stamp = tableLock.readLock();
+                try {
+                    int count = keyIndex.forEachInRange(cursor, Long.MAX_VALUE, VERSION_BATCH, key -> {
+                        last[0] = key;
+                        Product previous = undo.remove(key);
+                        if (previous != null) products.add(previous);
+                        else if (!absent.contains(key)) products.add(collection.get(key));
+                    });
+                    if (count < VERSION_BATCH || last[0] == Long.MAX_VALUE) scanned = true;
+                    else cursor = last[0] + 1;
+                } finally {
+                    tableLock.unlockRead(stamp);
+                }
+            }
+            // В журнале отката остались продукты, удалённые из таблицы до того, как обход до них дошёл
+            return undo.isEmpty() ? products : merge(products);
+        }
+
+        private List<Product> merge(List<Product> products) {
+            long[] keys = new long[undo.size()];
+            int[] size = {0};
+            undo.forEach((product, key) -> keys[size[0]++] = key);
+            Arrays.sort(keys);
+
+            List<Product> merged = new ArrayList<>(products.size() + keys.length);
+            int i = 0;
+            for (long key : keys) {
+                while (i < products.size() && products.get(i).getId() < key) merged.add(products.get(i++));
+                merged.add(undo.get(key));
+            }
+            while (i < products.size()) merged.add(products.get(i++));
+            return merged;
+        }
+    }
+
+    /**
+     * Открытая транзакция: изменения, ещё не применённые к таблице.
+     * <p>
+     * Транзакция хранит новые значения ключей и ключи таблицы, которые она удалила (или
+     * отметку, что таблица очищена целиком). Пока транзакция открыта, все изменения идут
+     * в неё, поэтому таблица и индексы не меняются и читаются без блокировки таблицы.
+     * Поток транзакции читает коллекцию через неё: чтения по ключам сливают диапазон индекса
+     * ключей с новыми значениями, а запросы по цене и владельцам строятся по всем видимым
+     * продуктам, так как индексы таблицы изменений транзакции не содержат.
+     * Методы вызываются под {@code mutationLock}, чтения берут её сами.
+     */
+    private class Transaction {
+        /** Поток, открывший транзакцию */
+        private final Thread owner = Thread.currentThread();
+        /** Новые значения ключей */
+        private final LongProductMap written = new LongProductMap();
+        /** Ключи таблицы, удалённые транзакцией */
+        private final LongKeyIndex deleted = new LongKeyIndex();
+        /** Транзакция очистила коллекцию, ключи таблицы не видны */
+        private boolean cleared;
+        /** Размер коллекции с изменениями транзакции */
+        private int size = collection.size();
+        /** Ключи, изменённые транзакцией */
+        private final Set<Long> dirtyKeys = new HashSet<>();
+        /** Количество изменений в транзакции */
+        private int mutations;
+
+        /**
+         * @return продукт по ключу с учётом изменений транзакции или null
+         */
+        private Product get(long key) {
+            synchronized (mutationLock) {
+                Product product = written.get(key);
+                if (product != null || cleared || deleted.contains(key)) return product;
+                return collection.get(key);
+            }
+        }
+
+        /**
+         * @return размер коллекции с учётом изменений транзакции
+         */
+        private int size() {
+            synchronized (mutationLock) {
+                return size;
+            }
+        }
+
+        /**
+         * @return видимые транзакции ключи из [from, to] в порядке возрастания
+         */
+        private long[] keys(long from, long to) {
+            synchronized (mutationLock) {
+                LongStream.Builder builder = LongStream.builder();
+                if (!cleared) keyIndex.forEachInRange(from, to, key -> {
+                    if (!written.containsKey(key) && !deleted.contains(key)) builder.add(key);
+                });
+                written.forEach((product, key) -> {
+                    if (key >= from && key <= to) builder.add(key);
+                });
+                long[] keys = builder.build().toArray();
+                Arrays.sort(keys);
+                return keys;
+            }
+        }
+
+        /**
+         * @return видимые транзакции продукты с ключами из [from, to] в порядке возрастания ключей
+         */
+        private List<Product> products(long from, long to) {
+            synchronized (mutationLock) {
+                long[] keys = keys(from, to);
+                List<Product> products = new ArrayList<>(keys.length);
+                for (long key : keys) products.add(get(key));
+                return products;
+            }
+        }
+
+        /**
+         * @return индекс цен по видимым транзакции продуктам
+         */
+        private PriceIndex priceIndex() {
+            PriceIndex index = new PriceIndex();
+            products(Long.MIN_VALUE, Long.MAX_VALUE).forEach(index::add);
+            return index;
+        }
+
+        /**
+         * @return видимые транзакции продукты с ценой из [from, to] в порядке индекса цен
+         */
+        private List<Product> productsByPrice(int from, int to) {
+            synchronized (mutationLock) {
+                List<Product> products = new ArrayList<>();
+                priceIndex().forEachInRangeWhile(from, to, key -> products.add(get(key)));
+                return products;
+            }
+        }
+
+        /**
+         * @return владельцы видимых транзакции продуктов (с повторениями)
+         */
+        private List<Person> owners() {
+            return products(Long.MIN_VALUE, Long.MAX_VALUE).stream()
+                    .map(Product::getOwner).filter(Objects::nonNull).collect(Collectors.toList());
+        }
+
+        private void put(Product product) {
+            if (get(product.getId()) == null) size++;
+            written.put(product.getId(), product);
+        }
+
+        /**
+         * Удаляет видимый ключ и отмечает его изменённым.
+         */
+        private void remove(long key) {
+            written.remove(key);
+            if (!cleared && keyIndex.contains(key)) deleted.add(key);
+            size--;
+            markDirty(key);
+        }
+
+        private void removeKeys(long bound, boolean below) {
+            if (bound == (below ? Long.MIN_VALUE : Long.MAX_VALUE)) return;
+            long[] keys = below ? keys(Long.MIN_VALUE, bound - 1) : keys(bound + 1, Long.MAX_VALUE);
+            for (long key : keys) remove(key);
+        }
+
+        /**
+         * Удаляет продукты, превышающие заданный в порядке индекса цен.
+         */
+        private void removeAbove(Product bound) {
+            for (Product product : products(Long.MIN_VALUE, Long.MAX_VALUE)) {
+                if (product.compareTo(bound) > 0) remove(product.getId());
+            }
+        }
+
+        private void clear() {
+            for (long key : keys(Long.MIN_VALUE, Long.MAX_VALUE)) markDirty(key);
+            written.clear();
+            deleted.clear();
+            cleared = true;
+            size = 0;
+        }
+
+        /**
+         * Применяет изменения транзакции к таблице и индексам.
+         * Вызывается под записывающей блокировкой таблицы после закрытия транзакции.
+         */
+        private void apply() {
+            if (cleared) {
+                keyIndex.forEach(CollectionManager.this::preserve);
+                clearTables();
+            } else if (!deleted.isEmpty()) {
+                LongStream.Builder builder = LongStream.builder();
+                deleted.forEach(builder);
+                long[] keys = builder.build().toArray();
+                keyIndex.removeAll(keys);
+                removeBatch(keys, false);
+            }
+            written.forEach((product, key) -> store(product));
+        }
+    }
+
+    /**
+     * Согласованный снимок коллекции для сохранения.
+     */
+    private static class Snapshot {
+        private final Version version;
+        private final Set<Long> dirtyKeys;
+        private final int mutations;
+        private final long journalPosition;
+
+        private Snapshot(Version version, Set<Long> dirtyKeys, int mutations, long journalPosition) {
+            this.version = version;
+            this.dirtyKeys = dirtyKeys;
+            this.mutations = mutations;
+            this.journalPosition = journalPosition;
+        }
+    }
+
+    /**
+     * Чтение порции продуктов для поиска; вызывается под читающей блокировкой таблицы.
+     */
+    private interface BatchReader {
+        /**
+         * @param last  последний продукт предыдущей порции или null для первой порции
+         * @param batch список, в который добавляются продукты порции
+         * @return true, если за порцией могут следовать другие продукты
+         */
+        boolean read(Product last, List<Product> batch);
     }
 }
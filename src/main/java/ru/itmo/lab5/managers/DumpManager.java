@@ -1,20 +1,63 @@
 package ru.itmo.lab5.managers;
 
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
-import com.opencsv.CSVWriter;
 import ru.itmo.lab5.data.Product;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
-import java.util.Scanner;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
 
 import ru.itmo.lab5.input.Console;
 
 public class DumpManager {
+    /** Минимальный размер куска файла при параллельной загрузке */
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    /** Расширение файлов с двоичным снимком коллекции */
+    public static final String BINARY_EXTENSION = ".bin";
+    /** Количество ключей, приходящихся на один сегмент */
+    public static final long SEGMENT_SIZE = 1024;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_EXTENSION = ".csv";
+    private static final Pattern SEGMENT_FILE = Pattern.compile(Pattern.quote(SEGMENT_PREFIX) + "-?\\d+" + Pattern.quote(SEGMENT_EXTENSION));
+    private static final String MANIFEST_NAME = "manifest.csv";
+    /** Расширение файла кэша с разобранным содержимым CSV-файла */
+    public static final String CACHE_EXTENSION = ".cache";
+    private static final int CACHE_MAGIC = 0x4C354341;
+    /** Сколько байт с начала и с конца CSV-файла входит в отпечаток кэша */
+    private static final int FINGERPRINT_SAMPLE = 1 << 16;
+
     private final String fileName;
     private final Console console;
+    private ReadMode readMode = ReadMode.STREAMING;
+    /** Последняя загрузка разобрала CSV-файл без ошибок, а годного кэша для него не было */
+    private boolean cacheStale;
 
     public DumpManager(String fileName, Console console) {
         if (fileName == null || fileName.isEmpty()) {
@@ -24,99 +67,646 @@ public class DumpManager {
         this.console = console;
     }
 
-    private String collection2CSV(Collection<Product> collection) {
+    /**
+     * Устанавливает способ чтения загрузочного файла.
+     * @param readMode способ чтения
+     */
+    public void setReadMode(ReadMode readMode) {
+        this.readMode = readMode;
+    }
+
+    /**
+     * Проверяет, хранится ли коллекция в двоичном формате.
+     * @return true, если файл имеет расширение {@value #BINARY_EXTENSION}
+     */
+    public boolean isBinary() {
+        return isBinary(Paths.get(fileName));
+    }
+
+    private static boolean isBinary(Path path) {
+        return path.toString().endsWith(BINARY_EXTENSION);
+    }
+
+    /**
+     * Проверяет, хранится ли коллекция по сегментам в каталоге.
+     * Сегментированным считается существующий каталог или путь, оканчивающийся разделителем.
+     * В сегменте с номером n хранятся продукты с ключами из [n * {@value #SEGMENT_SIZE}, (n + 1) * {@value #SEGMENT_SIZE}).
+     *
+     * @return true, если коллекция хранится по сегментам
+     */
+    public boolean isSegmented() {
+        return fileName.endsWith("/") || fileName.endsWith(File.separator) || Files.isDirectory(Paths.get(fileName));
+    }
+
+    /**
+     * Возвращает номер сегмента, в котором хранится продукт с заданным ключом.
+     * @param key ключ продукта
+     * @return номер сегмента
+     */
+    public static long segmentOf(long key) {
+        return Math.floorDiv(key, SEGMENT_SIZE);
+    }
+
+    private Path segmentPath(long segment) {
+        return Paths.get(fileName, SEGMENT_PREFIX + segment + SEGMENT_EXTENSION);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        Path directory = Paths.get(fileName);
+        if (!Files.isDirectory(directory)) return new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> SEGMENT_FILE.matcher(file.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingLong(DumpManager::segmentNumber))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path manifestPath() {
+        return Paths.get(fileName, MANIFEST_NAME);
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_EXTENSION.length()));
+    }
+
+    /**
+     * Сохраняет коллекцию в файл. Сегментированное хранилище перезаписывается целиком,
+     * сегменты записываются параллельно.
+     * @param collection сохраняемые продукты
+     * @return true, если коллекция сохранена, иначе false
+     */
+    public boolean writeCollection(Collection<Product> collection) {
         try {
-            StringWriter sw = new StringWriter();
-            CSVWriter csvWriter = new CSVWriter(sw);
-            for (Product e : collection) {
-                String[] array = Product.toArray(e);
-                csvWriter.writeNext(array);
+            if (isSegmented()) {
+                Files.createDirectories(Paths.get(fileName));
+                Map<Long, List<Product>> segments = collection.stream()
+                        .collect(Collectors.groupingBy(product -> segmentOf(product.getId())));
+                segments.entrySet().parallelStream()
+                        .forEach(segment -> writeSegment(segment.getKey(), segment.getValue()));
+
+                SegmentManifest manifest = new SegmentManifest();
+                segments.forEach(manifest::update);
+                writeAtomically(manifestPath(), manifest::writeTo);
+                // лишние сегменты удаляются только после записи манифеста, который на них уже не ссылается
+                for (Path file : segmentFiles()) {
+                    if (!segments.containsKey(segmentNumber(file))) Files.delete(file);
+                }
+            } else {
+                Path path = Paths.get(fileName);
+                writeFile(path, collection);
+                if (!isBinary(path)) writeCache(path, collection);
             }
-            csvWriter.close();
-            return sw.toString();
+            return true;
+        } catch (IOException e) {
+            console.printError("Ошибка при записи в файл: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            console.printError("Ошибка при записи в файл: " + e.getCause().getMessage());
         } catch (Exception e) {
             console.printError("Ошибка сериализации: " + e.getMessage());
-            return null;
         }
+        return false;
     }
 
-    public void writeCollection(Collection<Product> collection) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            String csv = collection2CSV(collection);
-            if (csv == null) return;
-            writer.write(csv);
-            console.println("Коллекция успешно сохранена в файл!");
+    /**
+     * Параллельно перезаписывает только сегменты, в которых есть изменённые ключи,
+     * и обновляет их сведения в манифесте.
+     * Время сохранения пропорционально количеству изменений, а не размеру коллекции.
+     *
+     * @param dirtyKeys ключи, добавленные, изменённые или удалённые с момента последнего сохранения
+     * @param lookup    функция получения продукта по ключу (null, если продукта нет);
+     *                  вызывается из нескольких потоков
+     * @return true, если изменения сохранены, иначе false
+     */
+    public boolean writeSegments(Set<Long> dirtyKeys, LongFunction<Product> lookup) {
+        try {
+            Files.createDirectories(Paths.get(fileName));
+            SegmentManifest manifest = SegmentManifest.read(manifestPath());
+            Map<Long, List<Product>> rewritten = dirtyKeys.stream()
+                    .map(DumpManager::segmentOf)
+                    .distinct()
+                    .collect(Collectors.toList())
+                    .parallelStream()
+                    .collect(Collectors.toConcurrentMap(segment -> segment, segment -> {
+                        List<Product> products = new ArrayList<>();
+                        // смещение внутри сегмента: граница (segment + 1) * SEGMENT_SIZE переполняется у последнего сегмента
+                        for (int offset = 0; offset < SEGMENT_SIZE; offset++) {
+                            Product product = lookup.apply(segment * SEGMENT_SIZE + offset);
+                            if (product != null) products.add(product);
+                        }
+                        writeSegment(segment, products);
+                        return products;
+                    }));
+            rewritten.forEach(manifest::update);
+            writeAtomically(manifestPath(), manifest::writeTo);
+            return true;
         } catch (IOException e) {
             console.printError("Ошибка при записи в файл: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            console.printError("Ошибка при записи в файл: " + e.getCause().getMessage());
+        } catch (Exception e) {
+            console.printError("Ошибка сериализации: " + e.getMessage());
         }
+        return false;
     }
 
-    private LinkedList<Product> CSV2collection(String s) {
-        console.println("Содержимое файла перед обработкой:");
-        console.println(s.toString());
-        LinkedList<Product> ds = new LinkedList<>();
-        if (s.isEmpty() || !s.contains(",")) {
-            console.println("Загрузочный файл пуст или не содержит данных: " + fileName);
-            return ds;
+    /**
+     * Записывает сегмент; пустой сегмент удаляется.
+     */
+    private void writeSegment(long segment, List<Product> products) {
+        try {
+            Path file = segmentPath(segment);
+            if (products.isEmpty()) Files.deleteIfExists(file);
+            else writeFile(file, products);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        try {
-            StringReader sr = new StringReader(s);
-//            CSVReader csvReader = new CSVReader(sr);
-            CSVReader csvReader = new CSVReaderBuilder(sr)
-                    .withSkipLines(1) // если у вас есть заголовок
-                    .build();
-            String[] record;
-            while ((record = csvReader.readNext()) != null) {
-                try {
-                    Product p = Product.fromArray(record);
-                    if (p != null && p.validate()) {
-                        ds.add(p);
-                    } else {
-                        console.printError("Файл с коллекцией содержит недействительные данные: " + String.join(", ", record));
+    /**
+     * Записывает продукты в файл в формате, определяемом его расширением.
+     */
+    private void writeFile(Path path, Collection<Product> collection) throws IOException {
+        writeAtomically(path, out -> {
+            if (isBinary(path)) {
+                new BinarySnapshotWriter(out).write(collection);
+            } else {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                ProductRowCodec codec = new ProductRowCodec();
+                StringBuilder rows = new StringBuilder(1 << 16);
+                for (Product product : collection) {
+                    codec.encode(product, rows);
+                    if (rows.length() >= 1 << 15) {
+                        writer.append(rows);
+                        rows.setLength(0);
                     }
-                } catch (IllegalArgumentException e) {
-                    console.printError("Ошибка при обработке строки: " + String.join(", ", record));
-                    console.printError(e.getMessage());
                 }
+                writer.append(rows);
+                writer.flush();
+            }
+        });
+    }
+
+    /**
+     * Атомарно записывает файл.
+     * <p>
+     * Данные потоково пишутся во временный файл в том же каталоге, который затем
+     * сбрасывается на диск и атомарно переименовывается поверх исходного. Если запись
+     * прервётся, предыдущая версия файла останется нетронутой.
+     */
+    private static void writeAtomically(Path path, StreamWriter body) throws IOException {
+        Path target = path.toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16)) {
+                body.write(out);
+                out.flush();
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Загружает коллекцию из файла (или из всех сегментов каталога) выбранным способом чтения.
+     * Если файл повреждён и загрузка прервалась, уже переданные получателю продукты
+     * отменяются, чтобы коллекция не осталась загруженной наполовину.
+     *
+     * @param sink  получатель загруженных продуктов
+     * @param reset отменяет все продукты, переданные получателю
+     * @return количество загруженных продуктов
+     */
+    public int readCollection(Consumer<Product> sink, Runnable reset) {
+        Path path = Paths.get(fileName);
+        if (!Files.exists(path)) {
+            console.printError("Загрузочный файл не найден: " + fileName);
+            return 0;
+        }
+
+        int loaded = 0;
+        try {
+            if (isSegmented()) {
+                loaded = readSegments(sink);
+            } else {
+                loaded = readFile(path, sink, reset);
             }
-            csvReader.close();
+        } catch (IOException e) {
+            console.printError("Ошибка при чтении файла: " + e.getMessage());
+            reset.run();
         } catch (Exception e) {
             console.printError("Ошибка десериализации: " + e.getMessage());
+            reset.run();
+        }
+
+        if (loaded > 0) {
+            console.println("Коллекция успешно загружена! Загружено продуктов: " + loaded);
+        } else {
+            console.println("В загрузочном файле не обнаружена необходимая коллекция: " + fileName);
+        }
+        return loaded;
+    }
+
+    /**
+     * Параллельно читает все сегменты каталога и сверяет количество записей и границы ключей с манифестом.
+     * Результаты и ошибки выводятся в порядке номеров сегментов.
+     */
+    private int readSegments(Consumer<Product> sink) throws IOException {
+        SegmentManifest manifest = SegmentManifest.read(manifestPath());
+        List<Path> files = segmentFiles();
+        ProductRowCodec.SharedValues shared = new ProductRowCodec.SharedValues();
+        List<ChunkResult> results = files.parallelStream()
+                .map(file -> readSegment(file, shared))
+                .collect(Collectors.toList());
+
+        int loaded = 0;
+        Set<Long> present = new HashSet<>();
+        for (int i = 0; i < files.size(); i++) {
+            long segment = segmentNumber(files.get(i));
+            ChunkResult result = results.get(i);
+            present.add(segment);
+            result.errors.forEach(console::printError);
+            result.products.forEach(sink);
+            loaded += result.products.size();
+
+            String mismatch = manifest.isEmpty() ? null : manifest.verify(segment, result.products);
+            if (mismatch != null) console.printError("Сегмент " + segment + ": " + mismatch);
+        }
+        for (long segment : manifest.segments()) {
+            if (!present.contains(segment)) console.printError("Сегмент " + segment + " из манифеста не найден");
+        }
+        return loaded;
+    }
+
+    /**
+     * Читает один сегмент.
+     */
+    private ChunkResult readSegment(Path file, ProductRowCodec.SharedValues shared) {
+        ChunkResult result = new ChunkResult();
+        String prefix = file.getFileName() + ": ";
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            readRecords(reader, 1, shared, result.products::add, error -> result.errors.add(prefix + error));
+        } catch (Exception e) {
+            result.errors.add(prefix + "ошибка при чтении сегмента: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Читает один файл способом, определяемым его форматом и выбранным способом чтения.
+     */
+    private int readFile(Path path, Consumer<Product> sink, Runnable reset) throws Exception {
+        if (isBinary(path)) {
+            return readBinary(path, sink);
         }
-        return ds;
+        int cached = readCache(path, sink, reset);
+        if (cached >= 0) return cached;
+
+        int[] failed = {0};
+        Consumer<String> errors = error -> {
+            failed[0]++;
+            console.printError(error);
+        };
+
+        int loaded;
+        ByteBuffer content = readMode == ReadMode.STREAMING ? null : map(path);
+        if (content == null) {
+            loaded = readStreaming(path, sink, errors);
+        } else if (readMode == ReadMode.PARALLEL) {
+            loaded = readParallel(content, sink, errors);
+        } else {
+            loaded = readRecords(new ByteBufferReader(content), 1, new ProductRowCodec.SharedValues(), sink, errors);
+        }
+        cacheStale = failed[0] == 0;
+        return loaded;
+    }
+
+    /**
+     * Записывает кэш CSV-файла после загрузки, если файл был разобран без ошибок,
+     * а годного кэша для него не было. Продукты берутся из уже загруженной коллекции,
+     * поэтому при загрузке их не нужно держать в отдельном списке.
+     *
+     * @param products загруженные продукты; обходятся дважды и могут собираться при обходе
+     */
+    public void refreshCache(Collection<Product> products) {
+        if (!cacheStale) return;
+        cacheStale = false;
+        writeCache(Paths.get(fileName), products);
     }
 
-    public LinkedList<Product> readCollection() {
-        LinkedList<Product> collection = new LinkedList<>();
+    /**
+     * Читает продукты из кэша CSV-файла, если отпечаток в заголовке кэша (размер,
+     * время изменения и CRC32 начала и конца файла) совпадает с текущим файлом.
+     * Отпечаток считается, только если совпали размер и время изменения.
+     * Продукты передаются получателю по одному; если кэш оказался повреждён, уже
+     * переданные продукты отменяются, и вызывающий разбирает сам CSV-файл.
+     *
+     * @return количество загруженных продуктов или -1, если кэш отсутствует или устарел
+     */
+    private int readCache(Path path, Consumer<Product> sink, Runnable reset) {
+        Path cache = cachePath(path);
+        if (!Files.exists(cache)) return -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cache)))) {
+            if (in.readInt() != CACHE_MAGIC) return -1;
+            long size = in.readLong();
+            long modified = in.readLong();
+            long hash = in.readLong();
+            if (size != Files.size(path) || modified != Files.getLastModifiedTime(path).toMillis() || hash != fingerprint(path)) {
+                return -1;
+            }
+
+            int[] loaded = {0};
+            try {
+                new BinarySnapshotReader(in).read(product -> {
+                    if (!product.validate()) throw new IllegalArgumentException("Недействительный продукт в кэше");
+                    sink.accept(product);
+                    loaded[0]++;
+                });
+            } catch (IOException | RuntimeException e) {
+                if (loaded[0] > 0) reset.run();
+                throw e;
+            }
+            return loaded[0];
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Записывает рядом с CSV-файлом кэш с уже разобранными продуктами и отпечатком файла.
+     * Ошибка записи кэша не считается ошибкой сохранения.
+     */
+    private void writeCache(Path path, Collection<Product> products) {
         try {
-            File file = new File(fileName);
-            if (!file.exists()) {
-                console.printError("Загрузочный файл не найден: " + fileName);
-                return collection;
+            long size = Files.size(path);
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            long hash = fingerprint(path);
+            writeAtomically(cachePath(path), out -> {
+                DataOutputStream header = new DataOutputStream(out);
+                header.writeInt(CACHE_MAGIC);
+                header.writeLong(size);
+                header.writeLong(modified);
+                header.writeLong(hash);
+                header.flush();
+                new BinarySnapshotWriter(out).write(products);
+            });
+        } catch (IOException e) {
+            console.printError("Не удалось записать кэш коллекции: " + e.getMessage());
+        }
+    }
+
+    private static Path cachePath(Path path) {
+        return path.resolveSibling(path.getFileName() + CACHE_EXTENSION);
+    }
+
+    /**
+     * Считает CRC32 первых и последних {@value #FINGERPRINT_SAMPLE} байт файла.
+     * Вместе с размером и временем изменения этого хватает, чтобы заметить замену файла,
+     * а время проверки не зависит от его размера.
+     */
+    private static long fingerprint(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(FINGERPRINT_SAMPLE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            update(crc, channel, buffer, 0);
+            if (size > FINGERPRINT_SAMPLE) update(crc, channel, buffer, Math.max(FINGERPRINT_SAMPLE, size - FINGERPRINT_SAMPLE));
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Добавляет к контрольной сумме до размера буфера байт файла, начиная с position.
+     */
+    private static void update(CRC32 crc, FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) break;
+        }
+        buffer.flip();
+        crc.update(buffer);
+    }
+
+    /**
+     * Отображает файл в память. Если файл отобразить нельзя, возвращает null,
+     * и файл читается потоково.
+     */
+    private ByteBuffer map(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                console.println("Файл слишком велик для отображения в память, используется потоковое чтение");
+                return null;
             }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException | UnsupportedOperationException e) {
+            console.println("Не удалось отобразить файл в память, используется потоковое чтение: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Читает двоичный снимок коллекции.
+     */
+    private int readBinary(Path path, Consumer<Product> sink) throws IOException {
+        int[] loaded = {0};
+        try (BinarySnapshotReader reader = new BinarySnapshotReader(Files.newInputStream(path))) {
+            reader.read(product -> {
+                if (product.validate()) {
+                    sink.accept(product);
+                    loaded[0]++;
+                } else {
+                    console.printError("Продукт с id = " + product.getId() + " содержит недействительные данные");
+                }
+            });
+        }
+        return loaded[0];
+    }
 
-            StringBuilder s = new StringBuilder();
+    /**
+     * Потоково читает файл: каждая запись сразу разбирается и передаётся получателю,
+     * файл целиком в памяти не держится.
+     */
+    private int readStreaming(Path path, Consumer<Product> sink, Consumer<String> errors) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return readRecords(reader, 1, new ProductRowCodec.SharedValues(), sink, errors);
+        }
+    }
 
-            try (Scanner fileReader = new Scanner(file)) {
-                while (fileReader.hasNextLine()) {
-                    s.append(fileReader.nextLine());
-                    s.append("\n");
+    /**
+     * Разбирает записи из потока символов кодеком строк.
+     *
+     * @param reader    источник символов
+     * @param firstLine номер строки файла, с которой начинается поток
+     * @param shared    строки и владельцы, общие для всей загрузки
+     * @param sink      получатель продуктов
+     * @param errors    получатель сообщений об ошибках
+     * @return количество загруженных продуктов
+     */
+    private int readRecords(Reader reader, long firstLine, ProductRowCodec.SharedValues shared,
+                            Consumer<Product> sink, Consumer<String> errors) throws IOException {
+        return new ProductRowCodec(shared).read(reader, firstLine, sink, errors);
+    }
+
+    /**
+     * Разбивает содержимое файла на куски по границам строк и разбирает их параллельно
+     * в общем fork-join пуле. Результаты и ошибки выводятся в порядке следования кусков.
+     */
+    private int readParallel(ByteBuffer content, Consumer<Product> sink, Consumer<String> errors) throws InterruptedException, ExecutionException {
+        List<ForkJoinTask<ChunkResult>> tasks = new ArrayList<>();
+        ProductRowCodec.SharedValues shared = new ProductRowCodec.SharedValues();
+        for (Chunk chunk : splitIntoChunks(content)) {
+            tasks.add(ForkJoinPool.commonPool().submit(() -> parseChunk(chunk, shared)));
+        }
+
+        int loaded = 0;
+        for (ForkJoinTask<ChunkResult> task : tasks) {
+            ChunkResult result = task.get();
+            result.errors.forEach(errors);
+            result.products.forEach(sink);
+            loaded += result.products.size();
+        }
+        return loaded;
+    }
+
+    /**
+     * Делит буфер на куски, заканчивающиеся переводом строки вне кавычек,
+     * и запоминает номер первой строки каждого куска.
+     */
+    private List<Chunk> splitIntoChunks(ByteBuffer content) {
+        int size = content.limit();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, size / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        List<Chunk> chunks = new ArrayList<>();
+
+        boolean quoted = false;
+        int start = 0;
+        long startLine = 1;
+        long line = 1;
+        for (int i = 0; i < size; i++) {
+            byte b = content.get(i);
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n' && !quoted) {
+                line++;
+                if (i + 1 - start >= chunkSize) {
+                    chunks.add(new Chunk(content, start, i + 1, startLine));
+                    start = i + 1;
+                    startLine = line;
                 }
+            } else if (b == '\n') {
+                line++;
             }
+        }
+        if (start < size) chunks.add(new Chunk(content, start, size, startLine));
+        return chunks;
+    }
 
-            LinkedList<Product> loadedCollection = CSV2collection(s.toString());
-            if (!loadedCollection.isEmpty()) {
-                console.println("Коллекция успешно загружена!");
-                return loadedCollection;
-            } else {
-                console.println("В загрузочном файле не обнаружена необходимая коллекция!");
+    /**
+     * Разбирает один кусок файла прямо из буфера, без промежуточного копирования.
+     */
+    private ChunkResult parseChunk(Chunk chunk, ProductRowCodec.SharedValues shared) throws IOException {
+        ByteBuffer slice = chunk.content.duplicate();
+        slice.limit(chunk.end).position(chunk.start);
+
+        ChunkResult result = new ChunkResult();
+        readRecords(new ByteBufferReader(slice.slice()), chunk.firstLine, shared, result.products::add, result.errors::add);
+        return result;
+    }
+
+    /**
+     * Способ чтения загрузочного файла.
+     */
+    public enum ReadMode {
+        STREAMING,
+        MAPPED,
+        PARALLEL
+    }
+
+    /**
+     * Кусок содержимого файла, выровненный по границам строк.
+     */
+    private static class Chunk {
+        private final ByteBuffer content;
+        private final int start;
+        private final int end;
+        private final long firstLine;
+
+        private Chunk(ByteBuffer content, int start, int end, long firstLine) {
+            this.content = content;
+            this.start = start;
+            this.end = end;
+            this.firstLine = firstLine;
+        }
+    }
+
+    /**
+     * Результат разбора одного куска.
+     */
+    private static class ChunkResult {
+        private final List<Product> products = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+    }
+
+    /**
+     * Запись содержимого файла в поток.
+     */
+    private interface StreamWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Поток символов, декодирующий UTF-8 прямо из байтового буфера
+     * (в том числе из отображённого в память файла).
+     * <p>
+     * Символ вне BMP занимает два char; если в буфер приёмника помещается только один,
+     * символ декодируется во вспомогательный буфер, а младший суррогат отдаётся
+     * следующим чтением.
+     */
+    private static class ByteBufferReader extends Reader {
+        private final ByteBuffer buffer;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer pair = CharBuffer.allocate(2);
+        private boolean flushed = false;
+
+        private ByteBufferReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            pair.flip();
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (len == 0) return 0;
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            while (pair.hasRemaining() && out.hasRemaining()) out.put(pair.get());
+            while (out.position() == off && !flushed) {
+                CoderResult result = decoder.decode(buffer, out, false);
+                if (out.position() > off) break;
+                if (result.isOverflow()) {
+                    pair.clear();
+                    decoder.decode(buffer, pair, false);
+                    pair.flip();
+                    out.put(pair.get());
+                } else {
+                    decoder.decode(buffer, out, true);
+                    decoder.flush(out);
+                    flushed = true;
+                }
             }
-        } catch (FileNotFoundException exception) {
-            console.printError("Загрузочный файл не найден: " + fileName);
-        } catch (Exception e) {
-            console.printError("Ошибка при чтении файла: " + e.getMessage());
+            int read = out.position() - off;
+            return read == 0 ? -1 : read;
+        }
+
+        @Override
+        public void close() {
         }
-        return collection;
     }
 }
@@ -0,0 +1,463 @@
+package ru.itmo.lab5.managers;
+
+import ru.itmo.lab5.data.Color;
+import ru.itmo.lab5.data.Coordinates;
+import ru.itmo.lab5.data.Country;
+import ru.itmo.lab5.data.Location;
+import ru.itmo.lab5.data.Person;
+import ru.itmo.lab5.data.Product;
+import ru.itmo.lab5.data.UnitOfMeasure;
+import ru.itmo.lab5.input.Console;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений коллекции (write-ahead log).
+ * <p>
+ * Каждая изменяющая команда дописывает в журнал компактную запись вида
+ * {@code [длина][тип][данные][CRC32]}. Записи сбрасываются на диск пачками:
+ * после {@value #SYNC_BATCH} записей или раз в {@value #SYNC_INTERVAL_MS} мс.
+ * При запуске журнал проигрывается поверх последнего сохранения, а после
+ * успешного сохранения записи, вошедшие в сохранённый снимок, отбрасываются. Оборванная или повреждённая запись в конце
+ * журнала (например, после аварийного завершения) отбрасывается.
+ * <p>
+ * Записи, сделанные между {@link #beginTransaction()} и {@link #commitTransaction()},
+ * копятся в памяти и при фиксации дописываются одной записью-транзакцией с общей
+ * контрольной суммой, поэтому после сбоя транзакция либо проигрывается целиком,
+ * либо отбрасывается.
+ */
+public class JournalManager {
+    /** Количество записей, после которого журнал принудительно сбрасывается на диск */
+    private static final int SYNC_BATCH = 64;
+    /** Период фонового сброса журнала на диск */
+    private static final long SYNC_INTERVAL_MS = 100;
+
+    private static final UnitOfMeasure[] UNITS = UnitOfMeasure.values();
+    private static final Color[] COLORS = Color.values();
+    private static final Country[] COUNTRIES = Country.values();
+
+    private final Path path;
+    private final Console console;
+    private FileChannel channel;
+    private int pending = 0;
+    /** Записи открытой транзакции или null */
+    private DataOutputStream transaction;
+    private ByteArrayOutputStream transactionBytes;
+    private int transactionSize;
+
+    /**
+     * Конструктор класса.
+     * @param fileName имя файла журнала
+     * @param console  консоль для вывода сообщений об ошибках
+     */
+    public JournalManager(String fileName, Console console) {
+        this.path = Paths.get(fileName);
+        this.console = console;
+
+        ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(this::sync, SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::sync));
+    }
+
+    /**
+     * Проигрывает записи журнала и открывает его для дозаписи.
+     * Хвост журнала после последней целой записи отбрасывается.
+     *
+     * @param target получатель записей
+     * @return количество проигранных записей
+     */
+    public synchronized int replay(Consumer<Record> target) {
+        int replayed = 0;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            long size = channel.size();
+            long position = 0;
+            while (position + 8 <= size) {
+                int length = in.readInt();
+                if (length <= 0 || position + 8 + length > size) break;
+                byte[] body = new byte[length];
+                in.readFully(body);
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if ((int) crc.getValue() != in.readInt()) break;
+
+                decode(body, target);
+                position += body.length + 8;
+                replayed++;
+            }
+            if (position < size) {
+                console.printError("Журнал изменений повреждён, незавершённые записи отброшены");
+                channel.truncate(position);
+            }
+            channel.position(position);
+        } catch (IOException e) {
+            console.printError("Ошибка при чтении журнала изменений: " + e.getMessage());
+        }
+        return replayed;
+    }
+
+    /**
+     * Записывает добавление продукта.
+     * @param product добавленный продукт
+     */
+    public void insert(Product product) {
+        append(Record.Type.INSERT, product, 0);
+    }
+
+    /**
+     * Записывает обновление продукта.
+     * @param product новое значение продукта
+     */
+    public void update(Product product) {
+        append(Record.Type.UPDATE, product, 0);
+    }
+
+    /**
+     * Записывает очистку коллекции.
+     */
+    public void clear() {
+        append(Record.Type.CLEAR, null, 0);
+    }
+
+    /**
+     * Записывает удаление элементов, превышающих заданный.
+     * @param product продукт, с которым сравнивались элементы
+     */
+    public void removeGreater(Product product) {
+        append(Record.Type.REMOVE_GREATER, product, 0);
+    }
+
+    /**
+     * Записывает удаление элементов с ключом больше заданного.
+     * @param key ключ
+     */
+    public void removeGreaterKey(long key) {
+        append(Record.Type.REMOVE_GREATER_KEY, null, key);
+    }
+
+    /**
+     * Записывает удаление элементов с ключом меньше заданного.
+     * @param key ключ
+     */
+    public void removeLowerKey(long key) {
+        append(Record.Type.REMOVE_LOWER_KEY, null, key);
+    }
+
+    /**
+     * Начинает транзакцию: последующие записи копятся в памяти до фиксации или отмены.
+     */
+    public synchronized void beginTransaction() {
+        transactionBytes = new ByteArrayOutputStream(1024);
+        transaction = new DataOutputStream(transactionBytes);
+        transactionSize = 0;
+    }
+
+    /**
+     * Фиксирует транзакцию, дописывая её записи в журнал одной записью.
+     */
+    public synchronized void commitTransaction() {
+        if (transaction == null) return;
+        try {
+            if (transactionSize == 0) return;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(transactionBytes.size() + 8);
+            DataOutputStream body = new DataOutputStream(bytes);
+            body.writeByte(Record.Type.TRANSACTION.ordinal());
+            body.writeInt(transactionSize);
+            transactionBytes.writeTo(body);
+            write(bytes.toByteArray());
+        } catch (IOException e) {
+            console.printError("Ошибка при записи в журнал изменений: " + e.getMessage());
+        } finally {
+            transaction = null;
+            transactionBytes = null;
+        }
+    }
+
+    /**
+     * Отменяет транзакцию, отбрасывая её записи.
+     */
+    public synchronized void rollbackTransaction() {
+        transaction = null;
+        transactionBytes = null;
+    }
+
+    /**
+     * Возвращает текущую позицию конца журнала. Все записи до неё отражены
+     * в состоянии коллекции на момент вызова.
+     * @return позиция в журнале
+     */
+    public synchronized long position() {
+        try {
+            return channel == null ? 0 : channel.position();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Отбрасывает записи журнала до указанной позиции после успешного сохранения коллекции.
+     * Оставшиеся записи переносятся в новый файл, который атомарно заменяет журнал.
+     *
+     * @param position позиция, полученная {@link #position()} при снятии сохранённого снимка
+     */
+    public synchronized void discardBefore(long position) {
+        if (channel == null) return;
+        try {
+            long size = channel.size();
+            if (position >= size) {
+                channel.truncate(0);
+                channel.position(0);
+                channel.force(false);
+                pending = 0;
+                return;
+            }
+
+            // Канал нового файла открыт до переименования и после него становится каналом журнала,
+            // поэтому при любой ошибке журнал продолжает писаться в прежний, ещё открытый файл.
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            FileChannel tail = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                long copied = 0;
+                while (copied < size - position) {
+                    copied += channel.transferTo(position + copied, size - position - copied, tail);
+                }
+                tail.force(false);
+                tail.position(tail.size());
+                try {
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException | RuntimeException e) {
+                tail.close();
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            FileChannel old = channel;
+            channel = tail;
+            pending = 0;
+            old.close();
+        } catch (IOException e) {
+            console.printError("Ошибка при очистке журнала изменений: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Сбрасывает накопленные записи на диск.
+     */
+    public synchronized void sync() {
+        if (channel == null || pending == 0) return;
+        try {
+            channel.force(false);
+            pending = 0;
+        } catch (IOException e) {
+            console.printError("Ошибка при сбросе журнала изменений на диск: " + e.getMessage());
+        }
+    }
+
+    private synchronized void append(Record.Type type, Product product, long key) {
+        if (channel == null) return;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream body = new DataOutputStream(bytes);
+            body.writeByte(type.ordinal());
+            if (product != null) writeProduct(body, product);
+            else body.writeLong(key);
+
+            if (transaction != null) {
+                transaction.writeInt(bytes.size());
+                bytes.writeTo(transaction);
+                transactionSize++;
+                return;
+            }
+            write(bytes.toByteArray());
+        } catch (IOException e) {
+            console.printError("Ошибка при записи в журнал изменений: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Дописывает в журнал кадр с телом записи и его контрольной суммой.
+     */
+    private void write(byte[] data) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer frame = ByteBuffer.allocate(data.length + 8);
+        frame.putInt(data.length).put(data).putInt((int) crc.getValue()).flip();
+        while (frame.hasRemaining()) channel.write(frame);
+
+        if (++pending >= SYNC_BATCH) sync();
+    }
+
+    /**
+     * Разбирает тело записи; запись-транзакция передаёт получателю все свои записи по порядку.
+     */
+    private static void decode(byte[] body, Consumer<Record> target) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        if (in.readByte() != Record.Type.TRANSACTION.ordinal()) {
+            target.accept(decode(body));
+            return;
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            byte[] nested = new byte[in.readInt()];
+            in.readFully(nested);
+            target.accept(decode(nested));
+        }
+    }
+
+    private static Record decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        Record.Type type = Record.Type.values()[in.readByte()];
+        switch (type) {
+            case INSERT:
+            case UPDATE:
+            case REMOVE_GREATER:
+                return new Record(type, readProduct(in), 0);
+            default:
+                return new Record(type, null, in.readLong());
+        }
+    }
+
+    private static void writeProduct(DataOutput out, Product product) throws IOException {
+        Coordinates coordinates = product.getCoordinates();
+        Person owner = product.getOwner();
+
+        out.writeLong(product.getId());
+        writeString(out, product.getName());
+        out.writeInt(coordinates.getX());
+        out.writeDouble(coordinates.getY());
+        out.writeLong(product.getCreationTime());
+        out.writeInt(product.getPrice() == null ? 0 : product.getPrice());
+        out.writeByte(product.getUnitOfMeasure() == null ? -1 : product.getUnitOfMeasure().ordinal());
+        out.writeBoolean(owner != null);
+        if (owner != null) {
+            writeString(out, owner.getName());
+            writeString(out, owner.getPassportID());
+            out.writeByte(owner.getHairColor() == null ? -1 : owner.getHairColor().ordinal());
+            out.writeByte(owner.getNationality() == null ? -1 : owner.getNationality().ordinal());
+            Location location = owner.getLocation();
+            out.writeBoolean(location != null);
+            if (location != null) {
+                out.writeLong(location.getX());
+                out.writeInt(location.getY());
+                writeString(out, location.getName());
+            }
+        }
+    }
+
+    private static Product readProduct(DataInput in) throws IOException {
+        long id = in.readLong();
+        String name = readString(in);
+        Coordinates coordinates = new Coordinates(in.readInt(), in.readDouble());
+        Instant creationDate = Instant.ofEpochMilli(in.readLong());
+        int price = in.readInt();
+        int unit = in.readByte();
+        Person owner = null;
+        if (in.readBoolean()) {
+            String ownerName = readString(in);
+            String passportID = readString(in);
+            int hairColor = in.readByte();
+            int nationality = in.readByte();
+            Location location = in.readBoolean() ? new Location(in.readLong(), in.readInt(), readString(in)) : null;
+            owner = new Person(ownerName, passportID, hairColor < 0 ? null : COLORS[hairColor],
+                    nationality < 0 ? null : COUNTRIES[nationality], location);
+        }
+        return new Product(id, name, coordinates, creationDate, price == 0 ? null : price,
+                unit < 0 ? null : UNITS[unit], owner);
+    }
+
+    /**
+     * Пишет строку как длину в байтах UTF-8 (-1 для null) и сами байты. В отличие от
+     * {@link DataOutput#writeUTF(String)}, длина строки не ограничена 65535 байтами,
+     * поэтому запись изменения, уже применённого к коллекции, не может не поместиться в журнал.
+     */
+    private static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) return null;
+        if (length < 0) throw new IOException("Повреждённая длина строки: " + length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Запись журнала изменений.
+     */
+    public static class Record {
+        /**
+         * Тип изменения коллекции.
+         */
+        public enum Type {
+            INSERT,
+            UPDATE,
+            CLEAR,
+            REMOVE_GREATER,
+            REMOVE_GREATER_KEY,
+            REMOVE_LOWER_KEY,
+            /** Группа записей, зафиксированная транзакцией; в {@link Record} не попадает */
+            TRANSACTION
+        }
+
+        private final Type type;
+        private final Product product;
+        private final long key;
+
+        private Record(Type type, Product product, long key) {
+            this.type = type;
+            this.product = product;
+            this.key = key;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public Product getProduct() {
+            return product;
+        }
+
+        public long getKey() {
+            return key;
+        }
+    }
+}
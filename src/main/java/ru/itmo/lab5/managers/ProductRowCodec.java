@@ -0,0 +1,563 @@
+package ru.itmo.lab5.managers;
+
+import ru.itmo.lab5.data.Color;
+import ru.itmo.lab5.data.Coordinates;
+import ru.itmo.lab5.data.Country;
+import ru.itmo.lab5.data.Location;
+import ru.itmo.lab5.data.Person;
+import ru.itmo.lab5.data.Product;
+import ru.itmo.lab5.data.UnitOfMeasure;
+import ru.itmo.lab5.utility.StringPool;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Instant;
+import java.time.Month;
+import java.time.Year;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Кодек строки CSV-файла с продуктом.
+ * <p>
+ * Строка состоит из семи полей в кавычках: id, name, координаты в виде
+ * {@code Coordinates{x=.., y=..}}, дата создания {@code yyyy-MM-dd HH:mm:ss.SSS} (UTC),
+ * price, unitOfMeasure и владелец в виде {@code Person{...}} или {@code null}.
+ * Декодер разбирает строку за один проход прямо из буфера символов: числа, даты и
+ * перечисления читаются без создания промежуточных строк, строки создаются только
+ * для итоговых значений полей. Имена владельцев, номера паспортов и названия мест берутся
+ * из пула строк кодека, а одинаковые владельцы — один объект, поэтому повторяющиеся
+ * значения не копируются. Кодеки, разбирающие куски одной загрузки в разных потоках,
+ * разделяют эти значения через общий {@link SharedValues}.
+ * Кодировщик пишет ту же строку, не вызывая toString().
+ * <p>
+ * Экземпляр хранит рабочие буферы и не потокобезопасен.
+ */
+public class ProductRowCodec {
+    private static final int FIELDS = 7;
+    private static final UnitOfMeasure[] UNITS = UnitOfMeasure.values();
+    private static final Color[] COLORS = Color.values();
+    private static final Country[] COUNTRIES = Country.values();
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final int[] fieldStart = new int[FIELDS];
+    private final int[] fieldEnd = new int[FIELDS];
+    private char[] buffer;
+    private char[] scratch = new char[64];
+    private final SharedValues shared;
+    /** Строки владельцев и мест, которые в данных сильно повторяются */
+    private final StringPool strings;
+    /** Уже прочитанные владельцы: одинаковые владельцы разных продуктов разделяют один объект */
+    private final Map<Person, Person> owners = new HashMap<>();
+
+    public ProductRowCodec() {
+        this(new SharedValues());
+    }
+
+    /**
+     * @param shared строки и владельцы, общие для всех кодеков одной загрузки
+     */
+    public ProductRowCodec(SharedValues shared) {
+        this.shared = shared;
+        this.strings = new StringPool(shared::string);
+    }
+
+    /**
+     * Читает все строки из потока символов и передаёт разобранные продукты получателю.
+     * Строки, в которых поле в кавычках содержит перевод строки, обрабатываются целиком.
+     *
+     * @param reader    источник символов
+     * @param firstLine номер строки файла, с которой начинается поток
+     * @param sink      получатель валидных продуктов
+     * @param errors    получатель сообщений об ошибках (с номером строки)
+     * @return количество загруженных продуктов
+     * @throws IOException если чтение не удалось
+     */
+    public int read(Reader reader, long firstLine, Consumer<Product> sink, Consumer<String> errors) throws IOException {
+        char[] buf = new char[1 << 16];
+        int length = 0;
+        int rowStart = 0;
+        int scan = 0;
+        boolean quoted = false;
+        int newlines = 0;
+        long line = firstLine;
+        int loaded = 0;
+
+        while (true) {
+            for (; scan < length; scan++) {
+                char c = buf[scan];
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == '\n') {
+                    if (quoted) {
+                        newlines++;
+                        continue;
+                    }
+                    if (accept(buf, rowStart, scan, line, sink, errors)) loaded++;
+                    line += newlines + 1;
+                    newlines = 0;
+                    rowStart = scan + 1;
+                }
+            }
+
+            if (rowStart > 0) {
+                System.arraycopy(buf, rowStart, buf, 0, length - rowStart);
+                length -= rowStart;
+                scan -= rowStart;
+                rowStart = 0;
+            }
+            if (length == buf.length) {
+                char[] grown = new char[buf.length * 2];
+                System.arraycopy(buf, 0, grown, 0, length);
+                buf = grown;
+            }
+
+            int read = reader.read(buf, length, buf.length - length);
+            if (read < 0) break;
+            length += read;
+        }
+        if (rowStart < length && accept(buf, rowStart, length, line, sink, errors)) loaded++;
+        return loaded;
+    }
+
+    private boolean accept(char[] buf, int from, int to, long line, Consumer<Product> sink, Consumer<String> errors) {
+        if (to > from && buf[to - 1] == '\r') to--;
+        if (to == from) return false;
+        try {
+            Product product = decode(buf, from, to);
+            if (product.validate()) {
+                sink.accept(product);
+                return true;
+            }
+            errors.accept("Строка " + line + ": файл с коллекцией содержит недействительные данные: " + new String(buf, from, to - from));
+        } catch (IllegalArgumentException e) {
+            errors.accept("Строка " + line + ": ошибка при обработке строки: " + new String(buf, from, to - from));
+            errors.accept(e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Разбирает одну строку файла (без перевода строки).
+     *
+     * @param buf  буфер символов
+     * @param from начало строки
+     * @param to   конец строки (не включительно)
+     * @return продукт
+     * @throws IllegalArgumentException если строка имеет неверный формат
+     */
+    public Product decode(char[] buf, int from, int to) {
+        buffer = buf;
+        splitFields(from, to);
+
+        long id = parseLong(fieldStart[0], fieldEnd[0], "id");
+        if (id <= 0) throw new IllegalArgumentException("Неверное значение для id: " + id);
+
+        String name = string(fieldStart[1], fieldEnd[1]);
+        if (name.trim().isEmpty()) throw new IllegalArgumentException("Неверное значение для name: " + name);
+
+        int p = expect(fieldStart[2], fieldEnd[2], "Coordinates{x=");
+        int comma = indexOf(p, fieldEnd[2], ", y=");
+        int x = parseInt(p, comma, "coordinates.x");
+        if (x <= -454) throw new IllegalArgumentException("Неверное значение для x: " + x);
+        int close = fieldEnd[2] - 1;
+        if (buf[close] != '}') throw new IllegalArgumentException("Неверный формат строки для Coordinates");
+        double y = parseDouble(comma + 4, close, "coordinates.y");
+
+        long creationDate = parseDate(fieldStart[3], fieldEnd[3]);
+
+        Integer price = null;
+        if (!isNull(fieldStart[4], fieldEnd[4])) {
+            price = parseInt(fieldStart[4], fieldEnd[4], "price");
+            if (price <= 0) throw new IllegalArgumentException("Неверное значение для price: " + price);
+        }
+
+        UnitOfMeasure unitOfMeasure = parseEnum(UNITS, fieldStart[5], fieldEnd[5], "unitOfMeasure");
+        if (unitOfMeasure == null) throw new IllegalArgumentException("Неверное значение для unitOfMeasure: null");
+
+        Person owner = isNull(fieldStart[6], fieldEnd[6]) ? null : parsePerson(fieldStart[6], fieldEnd[6]);
+
+        return new Product(id, name, new Coordinates(x, y), Instant.ofEpochMilli(creationDate), price, unitOfMeasure, owner);
+    }
+
+    private Person parsePerson(int from, int to) {
+        int p = expect(from, to, "Person{name='");
+        int end = indexOf(p, to, "', passportID='");
+        String name = pooled(p, end);
+
+        p = end + "', passportID='".length();
+        end = indexOf(p, to, "', hairColor=");
+        String passportID = pooled(p, end);
+
+        p = end + "', hairColor=".length();
+        end = indexOf(p, to, ", nationality=");
+        Color hairColor = parseEnum(COLORS, p, end, "hairColor");
+
+        p = end + ", nationality=".length();
+        end = indexOf(p, to, ", location=");
+        Country nationality = parseEnum(COUNTRIES, p, end, "nationality");
+
+        p = end + ", location=".length();
+        if (buffer[to - 1] != '}') throw new IllegalArgumentException("Неверный формат строки для Person");
+        Location location = null;
+        if (!isNull(p, to - 1)) {
+            p = expect(p, to, "Location{x=");
+            end = indexOf(p, to, ", y=");
+            long locationX = parseLong(p, end, "location.x");
+            p = end + ", y=".length();
+            end = indexOf(p, to, ", name='");
+            int locationY = parseInt(p, end, "location.y");
+            p = end + ", name='".length();
+            if (to - p < 3 || buffer[to - 3] != '\'' || buffer[to - 2] != '}') {
+                throw new IllegalArgumentException("Неверный формат строки для Location");
+            }
+            location = new Location(locationX, locationY, pooled(p, to - 3));
+        }
+        Person owner = new Person(name, passportID, hairColor, nationality, location);
+        Person known = owners.get(owner);
+        if (known == null) {
+            known = shared.owner(owner);
+            owners.put(known, known);
+        }
+        return known;
+    }
+
+    /**
+     * Находит границы полей строки. Границы поля в кавычках не включают сами кавычки.
+     */
+    private void splitFields(int from, int to) {
+        int field = 0;
+        int p = from;
+        while (true) {
+            if (field == FIELDS) throw new IllegalArgumentException("Слишком много полей в строке");
+            if (p < to && buffer[p] == '"') {
+                int start = ++p;
+                while (true) {
+                    if (p >= to) throw new IllegalArgumentException("Незакрытая кавычка в строке");
+                    if (buffer[p] == '"') {
+                        if (p + 1 < to && buffer[p + 1] == '"') p += 2;
+                        else break;
+                    } else {
+                        p++;
+                    }
+                }
+                fieldStart[field] = start;
+                fieldEnd[field] = p++;
+            } else {
+                fieldStart[field] = p;
+                while (p < to && buffer[p] != ',') p++;
+                fieldEnd[field] = p;
+            }
+            field++;
+            if (p >= to) break;
+            if (buffer[p] != ',') throw new IllegalArgumentException("Ожидалась запятая после поля " + field);
+            p++;
+        }
+        if (field < FIELDS) throw new IllegalArgumentException("Недостаточно данных для создания продукта");
+    }
+
+    /**
+     * Создаёт строку из диапазона буфера, заменяя удвоенные кавычки одинарными.
+     */
+    private String string(int from, int to) {
+        if (quoteIn(from, to) < 0) return new String(buffer, from, to - from);
+        return new String(scratch, 0, unescape(from, to));
+    }
+
+    /**
+     * Возвращает строку поля из пула, не создавая её, если такая уже встречалась.
+     */
+    private String pooled(int from, int to) {
+        if (quoteIn(from, to) < 0) return strings.intern(buffer, from, to);
+        return strings.intern(scratch, 0, unescape(from, to));
+    }
+
+    private int quoteIn(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == '"') return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Копирует поле в рабочий буфер, заменяя удвоенные кавычки одной.
+     * @return длина результата
+     */
+    private int unescape(int from, int to) {
+        if (scratch.length < to - from) scratch = new char[to - from];
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            scratch[n++] = buffer[i];
+            if (buffer[i] == '"' && i + 1 < to && buffer[i + 1] == '"') i++;
+        }
+        return n;
+    }
+
+    private int expect(int from, int to, String literal) {
+        if (!regionMatches(from, to, literal)) {
+            throw new IllegalArgumentException("Ожидалось '" + literal + "' в строке");
+        }
+        return from + literal.length();
+    }
+
+    private int indexOf(int from, int to, String literal) {
+        for (int i = from; i + literal.length() <= to; i++) {
+            if (regionMatches(i, to, literal)) return i;
+        }
+        throw new IllegalArgumentException("Ожидалось '" + literal + "' в строке");
+    }
+
+    private boolean regionMatches(int from, int to, String literal) {
+        if (to - from < literal.length()) return false;
+        for (int i = 0; i < literal.length(); i++) {
+            if (buffer[from + i] != literal.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private boolean isNull(int from, int to) {
+        return to - from == 4 && regionMatches(from, to, "null");
+    }
+
+    private <E extends Enum<E>> E parseEnum(E[] values, int from, int to, String field) {
+        if (isNull(from, to)) return null;
+        for (E value : values) {
+            String name = value.name();
+            if (name.length() == to - from && regionMatches(from, to, name)) return value;
+        }
+        throw new IllegalArgumentException("Неверное значение для " + field + ": " + new String(buffer, from, to - from));
+    }
+
+    private long parseLong(int from, int to, String field) {
+        int p = from;
+        boolean negative = p < to && buffer[p] == '-';
+        if (negative) p++;
+        if (p == to) throw new IllegalArgumentException("Неверное значение для " + field);
+        long result = 0;
+        for (; p < to; p++) {
+            int digit = buffer[p] - '0';
+            if (digit < 0 || digit > 9 || result < (Long.MIN_VALUE + digit) / 10) {
+                throw new IllegalArgumentException("Неверное значение для " + field + ": " + new String(buffer, from, to - from));
+            }
+            result = result * 10 - digit;
+        }
+        if (!negative && result == Long.MIN_VALUE) {
+            throw new IllegalArgumentException("Неверное значение для " + field + ": " + new String(buffer, from, to - from));
+        }
+        return negative ? result : -result;
+    }
+
+    private int parseInt(int from, int to, String field) {
+        long value = parseLong(from, to, field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Неверное значение для " + field + ": " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Разбирает число с плавающей точкой. Десятичные дроби до 15 значащих цифр
+     * без экспоненты вычисляются точно одним делением, остальные форматы
+     * передаются {@link Double#parseDouble(String)}.
+     */
+    private double parseDouble(int from, int to, String field) {
+        int p = from;
+        boolean negative = p < to && buffer[p] == '-';
+        if (negative) p++;
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        boolean simple = p < to;
+        for (; p < to && simple; p++) {
+            char c = buffer[p];
+            if (c == '.' && fraction < 0) {
+                fraction = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (mantissa != 0 || c != '0') digits++;
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction >= 0) fraction++;
+            } else {
+                simple = false;
+            }
+        }
+        if (simple && digits <= 15 && fraction <= 22) {
+            double value = fraction > 0 ? mantissa / POW10[fraction] : mantissa;
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(buffer, from, to - from));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Неверное значение для " + field + ": " + new String(buffer, from, to - from));
+        }
+    }
+
+    /**
+     * Разбирает дату {@code yyyy-MM-dd HH:mm:ss[.SSS]} (допускается разделитель 'T'
+     * и завершающий 'Z') в миллисекунды эпохи UTC.
+     */
+    private long parseDate(int from, int to) {
+        if (to > from && buffer[to - 1] == 'Z') to--;
+        if (to - from < 19 || buffer[from + 4] != '-' || buffer[from + 7] != '-'
+                || (buffer[from + 10] != ' ' && buffer[from + 10] != 'T')
+                || buffer[from + 13] != ':' || buffer[from + 16] != ':') {
+            throw new IllegalArgumentException("Ошибка парсинга даты: " + new String(buffer, from, to - from));
+        }
+        int year = (int) parseLong(from, from + 4, "creationDate");
+        int month = (int) parseLong(from + 5, from + 7, "creationDate");
+        int day = (int) parseLong(from + 8, from + 10, "creationDate");
+        int hour = (int) parseLong(from + 11, from + 13, "creationDate");
+        int minute = (int) parseLong(from + 14, from + 16, "creationDate");
+        int second = (int) parseLong(from + 17, from + 19, "creationDate");
+        int millis = 0;
+        if (to > from + 19) {
+            if (buffer[from + 19] != '.' || to == from + 20) {
+                throw new IllegalArgumentException("Ошибка парсинга даты: " + new String(buffer, from, to - from));
+            }
+            int end = Math.min(to, from + 23);
+            millis = (int) parseLong(from + 20, end, "creationDate");
+            for (int i = end - from - 20; i < 3; i++) millis *= 10;
+            if (end < to) parseLong(end, to, "creationDate");
+        }
+        if (month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))
+                || hour > 23 || minute > 59 || second > 59) {
+            throw new IllegalArgumentException("Ошибка парсинга даты: " + new String(buffer, from, to - from));
+        }
+        return ((daysFromCivil(year, month, day) * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis;
+    }
+
+    /**
+     * Дописывает строку файла с продуктом (вместе с переводом строки).
+     *
+     * @param product продукт
+     * @param out     приёмник символов
+     * @throws IllegalArgumentException если продукт нельзя сохранить
+     */
+    public void encode(Product product, StringBuilder out) {
+        if (product.getId() <= 0) {
+            throw new IllegalArgumentException("Неверное значение для id: " + product.getId());
+        }
+        if (product.getName() == null || product.getName().trim().isEmpty()) {
+            throw new IllegalArgumentException("Неверное значение для name: " + product.getName());
+        }
+        Coordinates coordinates = product.getCoordinates();
+        if (coordinates == null || !coordinates.validate()) {
+            throw new IllegalArgumentException("Неверное значение для coordinates: " + coordinates);
+        }
+        if (product.getUnitOfMeasure() == null) {
+            throw new IllegalArgumentException("Неверное значение для unitOfMeasure: null");
+        }
+        Person owner = product.getOwner();
+        if (owner != null && !owner.validate()) {
+            throw new IllegalArgumentException("Некорректные данные для owner: " + owner);
+        }
+
+        out.append('"').append(product.getId()).append("\",\"");
+        appendEscaped(out, product.getName());
+        out.append("\",\"Coordinates{x=").append(coordinates.getX().intValue())
+                .append(", y=").append(coordinates.getY().doubleValue()).append("}\",\"");
+        appendDate(out, product.getCreationTime());
+        out.append("\",\"");
+        if (product.getPrice() == null || product.getPrice() <= 0) out.append("null");
+        else out.append(product.getPrice().intValue());
+        out.append("\",\"").append(product.getUnitOfMeasure().name()).append("\",\"");
+        if (owner == null) {
+            out.append("null");
+        } else {
+            Location location = owner.getLocation();
+            out.append("Person{name='");
+            appendEscaped(out, owner.getName());
+            out.append("', passportID='");
+            appendEscaped(out, owner.getPassportID());
+            out.append("', hairColor=").append(owner.getHairColor().name())
+                    .append(", nationality=").append(owner.getNationality().name())
+                    .append(", location=Location{x=").append(location.getX())
+                    .append(", y=").append(location.getY())
+                    .append(", name='");
+            appendEscaped(out, location.getName());
+            out.append("'}}");
+        }
+        out.append("\"\n");
+    }
+
+    private static void appendEscaped(StringBuilder out, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') out.append('"');
+            out.append(c);
+        }
+    }
+
+    /**
+     * Дописывает дату в формате {@code yyyy-MM-dd HH:mm:ss.SSS} (UTC).
+     */
+    private static void appendDate(StringBuilder out, long epochMillis) {
+        long days = Math.floorDiv(epochMillis, 86_400_000L);
+        long millisOfDay = Math.floorMod(epochMillis, 86_400_000L);
+
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long day = doy - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        pad(out, year, 4).append('-');
+        pad(out, month, 2).append('-');
+        pad(out, day, 2).append(' ');
+        pad(out, millisOfDay / 3_600_000, 2).append(':');
+        pad(out, millisOfDay / 60_000 % 60, 2).append(':');
+        pad(out, millisOfDay / 1000 % 60, 2).append('.');
+        pad(out, millisOfDay % 1000, 3);
+    }
+
+    private static StringBuilder pad(StringBuilder out, long value, int width) {
+        if (value < 0) {
+            out.append('-');
+            value = -value;
+        }
+        for (long limit = 10; width > 1; width--, limit *= 10) {
+            if (value < limit) out.append('0');
+        }
+        return out.append(value);
+    }
+
+    private static long daysFromCivil(long year, long month, long day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yoe = year - era * 400;
+        long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * Строки и владельцы, общие для нескольких кодеков одной загрузки. Кодек сначала ищет
+     * значение в своём пуле и обращается сюда только за новым для себя значением,
+     * поэтому одинаковые значения из разных кусков файла тоже становятся одним объектом.
+     * <p>
+     * Класс потокобезопасен.
+     */
+    public static class SharedValues {
+        private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Person, Person> owners = new ConcurrentHashMap<>();
+
+        private String string(String value) {
+            String known = strings.putIfAbsent(value, value);
+            return known == null ? value : known;
+        }
+
+        private Person owner(Person owner) {
+            Person known = owners.putIfAbsent(owner, owner);
+            return known == null ? owner : known;
+        }
+    }
+}
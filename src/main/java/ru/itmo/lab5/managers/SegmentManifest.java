@@ -0,0 +1,138 @@
+package ru.itmo.lab5.managers;
+
+import ru.itmo.lab5.data.Product;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Манифест сегментированного хранилища: для каждого сегмента хранит границы
+ * ключей, которые в нём лежат, и количество записей.
+ * <p>
+ * Файл манифеста текстовый, по строке на сегмент: {@code segment,firstKey,lastKey,count}.
+ */
+class SegmentManifest {
+    private final NavigableMap<Long, Entry> entries = new TreeMap<>();
+
+    /**
+     * Читает манифест из файла. Если файла нет, возвращает пустой манифест.
+     * @param path путь к файлу манифеста
+     * @return манифест
+     * @throws IOException если файл не читается или повреждён
+     */
+    static SegmentManifest read(Path path) throws IOException {
+        SegmentManifest manifest = new SegmentManifest();
+        if (!Files.exists(path)) return manifest;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String[] parts = line.split(",");
+                try {
+                    if (parts.length != 4) throw new NumberFormatException();
+                    manifest.entries.put(Long.parseLong(parts[0]),
+                            new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), Integer.parseInt(parts[3])));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Повреждённая строка манифеста: " + line);
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Записывает манифест в поток.
+     * @param out поток
+     * @throws IOException если запись не удалась
+     */
+    void writeTo(OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        for (Map.Entry<Long, Entry> entry : entries.entrySet()) {
+            Entry e = entry.getValue();
+            writer.write(entry.getKey() + "," + e.firstKey + "," + e.lastKey + "," + e.count + "\n");
+        }
+        writer.flush();
+    }
+
+    /**
+     * Обновляет сведения о сегменте по его содержимому. Пустой сегмент удаляется из манифеста.
+     * @param segment  номер сегмента
+     * @param products продукты сегмента
+     */
+    void update(long segment, Collection<Product> products) {
+        Entry entry = Entry.of(products);
+        if (entry == null) entries.remove(segment);
+        else entries.put(segment, entry);
+    }
+
+    /**
+     * Сверяет загруженный сегмент с манифестом: количество записей и границы ключей.
+     * @param segment  номер сегмента
+     * @param products загруженные продукты сегмента
+     * @return описание расхождения или null, если сегмент совпадает с манифестом
+     */
+    String verify(long segment, Collection<Product> products) {
+        Entry expected = entries.get(segment);
+        Entry loaded = Entry.of(products);
+        int expectedCount = expected == null ? 0 : expected.count;
+        int loadedCount = loaded == null ? 0 : loaded.count;
+        if (expectedCount != loadedCount) {
+            return "по манифесту " + expectedCount + " записей, загружено " + loadedCount;
+        }
+        if (expected != null && (expected.firstKey != loaded.firstKey || expected.lastKey != loaded.lastKey)) {
+            return "по манифесту ключи от " + expected.firstKey + " до " + expected.lastKey
+                    + ", загружены от " + loaded.firstKey + " до " + loaded.lastKey;
+        }
+        return null;
+    }
+
+    /**
+     * @return номера сегментов в порядке возрастания
+     */
+    Collection<Long> segments() {
+        return entries.keySet();
+    }
+
+    /**
+     * @return true, если манифест не содержит сегментов
+     */
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    private static class Entry {
+        private final long firstKey;
+        private final long lastKey;
+        private final int count;
+
+        private Entry(long firstKey, long lastKey, int count) {
+            this.firstKey = firstKey;
+            this.lastKey = lastKey;
+            this.count = count;
+        }
+
+        /**
+         * @return сведения о продуктах сегмента или null, если продуктов нет
+         */
+        private static Entry of(Collection<Product> products) {
+            if (products.isEmpty()) return null;
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            for (Product product : products) {
+                first = Math.min(first, product.getId());
+                last = Math.max(last, product.getId());
+            }
+            return new Entry(first, last, products.size());
+        }
+    }
+}
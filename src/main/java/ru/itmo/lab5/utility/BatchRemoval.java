@@ -0,0 +1,22 @@
+package ru.itmo.lab5.utility;
+
+/**
+ * Выбор способа удаления пакета из упорядоченного индекса: поиском каждого ключа
+ * от корня или одним проходом по всему индексу.
+ */
+final class BatchRemoval {
+    /** Пакет меньше этой доли индекса удаляется поиском каждого ключа, а не проходом по индексу */
+    static final int WALK_FRACTION = 16;
+
+    private BatchRemoval() {
+    }
+
+    /**
+     * @param batch размер пакета
+     * @param size  размер индекса
+     * @return true, если пакет выгоднее удалять поиском каждого ключа
+     */
+    static boolean byLookup(int batch, int size) {
+        return (long) batch * WALK_FRACTION < size;
+    }
+}
@@ -0,0 +1,267 @@
+package ru.itmo.lab5.utility;
+
+import ru.itmo.lab5.data.Color;
+import ru.itmo.lab5.data.Coordinates;
+import ru.itmo.lab5.data.Country;
+import ru.itmo.lab5.data.Location;
+import ru.itmo.lab5.data.Person;
+import ru.itmo.lab5.data.Product;
+import ru.itmo.lab5.data.UnitOfMeasure;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Столбцовое хранилище продуктов (struct of arrays).
+ * <p>
+ * Каждое поле продукта хранится в отдельном примитивном массиве: id, координаты,
+ * время создания в миллисекундах, цена, порядковые номера перечислений, поля владельца
+ * и его местоположения. Названия продуктов, как правило уникальные, хранятся
+ * в столбце строк, а часто повторяющиеся строки владельцев и местоположений —
+ * номерами в {@link StringDictionary}.
+ * Записи лежат плотно в ячейках [0, size): удалённую запись замещает последняя,
+ * ключ ведёт к ячейке через {@link LongIntMap}. Объект {@link Product} собирается
+ * только при чтении.
+ * <p>
+ * Класс не потокобезопасен.
+ */
+public class ColumnarProductStore implements ProductStore {
+    private static final int MIN_CAPACITY = 16;
+
+    private static final byte HAS_X = 1;
+    private static final byte HAS_Y = 2;
+    private static final byte HAS_DATE = 4;
+    private static final byte HAS_PRICE = 8;
+    private static final byte HAS_OWNER = 16;
+    private static final byte HAS_LOCATION = 32;
+
+    private static final UnitOfMeasure[] UNITS = UnitOfMeasure.values();
+    private static final Color[] COLORS = Color.values();
+    private static final Country[] COUNTRIES = Country.values();
+
+    private final LongIntMap slots;
+    private final StringDictionary strings;
+    private int size;
+
+    private long[] ids;
+    private byte[] flags;
+    private String[] names;
+    private int[] xs;
+    private double[] ys;
+    private long[] created;
+    private int[] prices;
+    private byte[] units;
+    private int[] ownerNames;
+    private int[] passports;
+    private byte[] hairColors;
+    private byte[] nationalities;
+    private long[] locationXs;
+    private int[] locationYs;
+    private int[] locationNames;
+
+    public ColumnarProductStore() {
+        slots = new LongIntMap();
+        strings = new StringDictionary();
+        allocate(MIN_CAPACITY);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Product get(long key) {
+        int slot = slots.get(key);
+        return slot < 0 ? null : materialize(slot);
+    }
+
+    @Override
+    public Product put(long key, Product product) {
+        if (product == null) throw new NullPointerException("Значение не может быть null");
+        int slot = slots.get(key);
+        Product previous = null;
+        if (slot >= 0) {
+            previous = materialize(slot);
+        } else {
+            if (size == ids.length) allocate(size * 2);
+            slot = size++;
+            slots.put(key, slot);
+        }
+        write(slot, key, product);
+        return previous;
+    }
+
+    @Override
+    public Product remove(long key) {
+        int slot = slots.get(key);
+        if (slot < 0) return null;
+        Product removed = materialize(slot);
+        delete(key);
+        compactStringsIfSparse();
+        return removed;
+    }
+
+    /**
+     * Удаляет пакет ключей, не собирая продукты; словарь строк проверяется один раз в конце.
+     */
+    @Override
+    public void removeAll(long[] keys) {
+        for (long key : keys) delete(key);
+        compactStringsIfSparse();
+    }
+
+    @Override
+    public void clear() {
+        slots.clear();
+        strings.clear();
+        size = 0;
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Считает статистику цен прямо по столбцам цен, флагов и группирующего поля.
+     */
+    @Override
+    public PriceAggregate aggregatePrices(PriceAggregate.Grouping grouping) {
+        byte[] groups = grouping == PriceAggregate.Grouping.UNIT ? units
+                : grouping == PriceAggregate.Grouping.COUNTRY ? nationalities : hairColors;
+        boolean ownerField = grouping != PriceAggregate.Grouping.UNIT;
+        return PriceAggregate.reduce(size, grouping, (part, from, to) -> {
+            for (int slot = from; slot < to; slot++) {
+                byte f = flags[slot];
+                int group = ownerField && (f & HAS_OWNER) == 0 ? -1 : groups[slot];
+                part.add(group, (f & HAS_PRICE) != 0, prices[slot]);
+            }
+        });
+    }
+
+    private void write(int slot, long key, Product product) {
+        Coordinates coordinates = product.getCoordinates();
+        Person owner = product.getOwner();
+        byte f = 0;
+
+        ids[slot] = key;
+        names[slot] = product.getName();
+        if (coordinates != null && coordinates.getX() != null) {
+            f |= HAS_X;
+            xs[slot] = coordinates.getX();
+        }
+        if (coordinates != null && coordinates.getY() != null) {
+            f |= HAS_Y;
+            ys[slot] = coordinates.getY();
+        }
+        f |= HAS_DATE;
+        created[slot] = product.getCreationTime();
+        if (product.getPrice() != null) {
+            f |= HAS_PRICE;
+            prices[slot] = product.getPrice();
+        }
+        units[slot] = ordinal(product.getUnitOfMeasure());
+        if (owner != null) {
+            f |= HAS_OWNER;
+            ownerNames[slot] = strings.intern(owner.getName());
+            passports[slot] = strings.intern(owner.getPassportID());
+            hairColors[slot] = ordinal(owner.getHairColor());
+            nationalities[slot] = ordinal(owner.getNationality());
+            Location location = owner.getLocation();
+            if (location != null) {
+                f |= HAS_LOCATION;
+                locationXs[slot] = location.getX();
+                locationYs[slot] = location.getY();
+                locationNames[slot] = strings.intern(location.getName());
+            }
+        }
+        flags[slot] = f;
+    }
+
+    private Product materialize(int slot) {
+        byte f = flags[slot];
+        Coordinates coordinates = (f & (HAS_X | HAS_Y)) == 0 ? null
+                : new Coordinates((f & HAS_X) != 0 ? xs[slot] : null, (f & HAS_Y) != 0 ? ys[slot] : null);
+        Person owner = null;
+        if ((f & HAS_OWNER) != 0) {
+            Location location = (f & HAS_LOCATION) == 0 ? null
+                    : new Location(locationXs[slot], locationYs[slot], strings.get(locationNames[slot]));
+            owner = new Person(strings.get(ownerNames[slot]), strings.get(passports[slot]),
+                    hairColors[slot] < 0 ? null : COLORS[hairColors[slot]],
+                    nationalities[slot] < 0 ? null : COUNTRIES[nationalities[slot]], location);
+        }
+        return new Product(ids[slot], names[slot], coordinates,
+                (f & HAS_DATE) != 0 ? Instant.ofEpochMilli(created[slot]) : null,
+                (f & HAS_PRICE) != 0 ? prices[slot] : null,
+                units[slot] < 0 ? null : UNITS[units[slot]], owner);
+    }
+
+    /**
+     * Удаляет запись, перенося на её место последнюю.
+     */
+    private void delete(long key) {
+        int slot = slots.remove(key);
+        if (slot < 0) return;
+        int last = --size;
+        if (slot != last) {
+            move(last, slot);
+            slots.put(ids[slot], slot);
+        }
+        names[last] = null;
+    }
+
+    private void compactStringsIfSparse() {
+        if (strings.size() > 6 * size + 1024) compactStrings();
+    }
+
+    private void move(int from, int to) {
+        ids[to] = ids[from];
+        flags[to] = flags[from];
+        names[to] = names[from];
+        xs[to] = xs[from];
+        ys[to] = ys[from];
+        created[to] = created[from];
+        prices[to] = prices[from];
+        units[to] = units[from];
+        ownerNames[to] = ownerNames[from];
+        passports[to] = passports[from];
+        hairColors[to] = hairColors[from];
+        nationalities[to] = nationalities[from];
+        locationXs[to] = locationXs[from];
+        locationYs[to] = locationYs[from];
+        locationNames[to] = locationNames[from];
+    }
+
+    /**
+     * Перестраивает словарь, оставляя в нём только строки живых записей.
+     */
+    private void compactStrings() {
+        StringDictionary old = strings.copy();
+        strings.clear();
+        for (int slot = 0; slot < size; slot++) {
+            if ((flags[slot] & HAS_OWNER) == 0) continue;
+            ownerNames[slot] = strings.intern(old.get(ownerNames[slot]));
+            passports[slot] = strings.intern(old.get(passports[slot]));
+            if ((flags[slot] & HAS_LOCATION) != 0) locationNames[slot] = strings.intern(old.get(locationNames[slot]));
+        }
+    }
+
+    private void allocate(int capacity) {
+        ids = ids == null ? new long[capacity] : Arrays.copyOf(ids, capacity);
+        flags = flags == null ? new byte[capacity] : Arrays.copyOf(flags, capacity);
+        names = names == null ? new String[capacity] : Arrays.copyOf(names, capacity);
+        xs = xs == null ? new int[capacity] : Arrays.copyOf(xs, capacity);
+        ys = ys == null ? new double[capacity] : Arrays.copyOf(ys, capacity);
+        created = created == null ? new long[capacity] : Arrays.copyOf(created, capacity);
+        prices = prices == null ? new int[capacity] : Arrays.copyOf(prices, capacity);
+        units = units == null ? new byte[capacity] : Arrays.copyOf(units, capacity);
+        ownerNames = ownerNames == null ? new int[capacity] : Arrays.copyOf(ownerNames, capacity);
+        passports = passports == null ? new int[capacity] : Arrays.copyOf(passports, capacity);
+        hairColors = hairColors == null ? new byte[capacity] : Arrays.copyOf(hairColors, capacity);
+        nationalities = nationalities == null ? new byte[capacity] : Arrays.copyOf(nationalities, capacity);
+        locationXs = locationXs == null ? new long[capacity] : Arrays.copyOf(locationXs, capacity);
+        locationYs = locationYs == null ? new int[capacity] : Arrays.copyOf(locationYs, capacity);
+        locationNames = locationNames == null ? new int[capacity] : Arrays.copyOf(locationNames, capacity);
+    }
+
+    private static byte ordinal(Enum<?> value) {
+        return value == null ? -1 : (byte) value.ordinal();
+    }
+}
@@ -0,0 +1,83 @@
+package ru.itmo.lab5.utility;
+
+import ru.itmo.lab5.data.Person;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Упорядоченное по номеру паспорта множество различных владельцев со счётчиком ссылок.
+ * <p>
+ * Владелец хранится, пока на него ссылается хотя бы один продукт. Владельцы с одним
+ * паспортом и разными именами считаются разными и упорядочиваются по имени.
+ * Значение null считается меньше любой строки.
+ * <p>
+ * Класс не потокобезопасен.
+ */
+public class DistinctOwnerView {
+    private final TreeMap<OwnerKey, Integer> owners = new TreeMap<>(OwnerKey.BY_PASSPORT);
+
+    /**
+     * Добавляет ссылку на владельца.
+     * @param owner владелец
+     */
+    public void add(Person owner) {
+        owners.merge(new OwnerKey(owner), 1, Integer::sum);
+    }
+
+    /**
+     * Убирает ссылку на владельца; владелец без ссылок удаляется.
+     * @param owner владелец
+     */
+    public void remove(Person owner) {
+        owners.computeIfPresent(new OwnerKey(owner), (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Убирает по одной ссылке на каждого владельца пакета. Ссылки большого пакета
+     * подсчитываются по владельцам в хеш-таблице и снимаются одним проходом по дереву,
+     * без поиска каждого владельца от корня.
+     * @param removed владельцы
+     */
+    public void removeAll(Person[] removed) {
+        if (BatchRemoval.byLookup(removed.length, owners.size())) {
+            for (Person owner : removed) remove(owner);
+            return;
+        }
+        Map<OwnerKey, Integer> batch = new HashMap<>();
+        for (Person owner : removed) batch.merge(new OwnerKey(owner), 1, Integer::sum);
+        Iterator<Map.Entry<OwnerKey, Integer>> iterator = owners.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<OwnerKey, Integer> entry = iterator.next();
+            Integer references = batch.get(entry.getKey());
+            if (references == null) continue;
+            if (entry.getValue() <= references) iterator.remove();
+            else entry.setValue(entry.getValue() - references);
+        }
+    }
+
+    /**
+     * Удаляет всех владельцев.
+     */
+    public void clear() {
+        owners.clear();
+    }
+
+    /**
+     * @return количество различных владельцев
+     */
+    public int size() {
+        return owners.size();
+    }
+
+    /**
+     * Обходит имена различных владельцев в порядке возрастания номера паспорта.
+     * @param action действие над именем владельца
+     */
+    public void forEachName(Consumer<String> action) {
+        for (Map.Entry<OwnerKey, Integer> entry : owners.entrySet()) action.accept(entry.getKey().name);
+    }
+}
@@ -3,6 +3,7 @@ package ru.itmo.lab5.utility;
 import ru.itmo.lab5.exceptions.ScriptRecursionException;
 import ru.itmo.lab5.input.Console;
 import ru.itmo.lab5.input.InputSteamer;
+import ru.itmo.lab5.managers.CollectionManager;
 import ru.itmo.lab5.managers.CommandManager;
 
 import java.io.File;
@@ -25,6 +26,10 @@ public class Executor {
      * Стек скриптов для контроля рекурсии
      */
     private final Set<String> scriptStack = new HashSet<>();
+    /**
+     * Коллекция, изменения которой скрипт выполняет в транзакции (null - без транзакций)
+     */
+    private CollectionManager transactions;
 
     /**
      * Конструктор класса.
@@ -37,6 +42,17 @@ public class Executor {
         this.commandManager = commandManager;
     }
 
+    /**
+     * Включает транзакционное выполнение скриптов: изменения коллекции, сделанные
+     * скриптом (вместе с вложенными), фиксируются только при его успешном завершении,
+     * а при ошибке отменяются.
+     *
+     * @param collectionManager Менеджер коллекции
+     */
+    public void setTransactional(CollectionManager collectionManager) {
+        this.transactions = collectionManager;
+    }
+
     /**
      * Интерактивный режим
      */
@@ -73,6 +89,30 @@ public class Executor {
      * @return Код завершения.
      */
     public ExitCode fromScript(String argument) {
+        if (transactions == null || transactions.inTransaction()) return runScript(argument);
+
+        transactions.beginTransaction();
+        ExitCode exitCode = ExitCode.ERROR;
+        try {
+            exitCode = runScript(argument);
+        } finally {
+            if (exitCode == ExitCode.ERROR) {
+                transactions.rollbackTransaction();
+                console.println("Изменения коллекции, сделанные скриптом, отменены");
+            } else {
+                transactions.commitTransaction();
+            }
+        }
+        return exitCode;
+    }
+
+    /**
+     * Выполняет команды скрипта.
+     *
+     * @param argument Аргумент скрипта
+     * @return Код завершения.
+     */
+    private ExitCode runScript(String argument) {
         String[] inputCommand;
         ExitCode exitCode;
         scriptStack.add(argument);
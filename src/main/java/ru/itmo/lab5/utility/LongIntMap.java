@@ -0,0 +1,137 @@
+package ru.itmo.lab5.utility;
+
+/**
+ * Хеш-таблица с открытой адресацией из ключей long в неотрицательные значения int.
+ * <p>
+ * Устроена так же, как {@link LongProductMap}: параллельные массивы, линейное
+ * пробирование и удаление обратным сдвигом. Значение хранится со сдвигом на единицу,
+ * ноль в ячейке обозначает пустую ячейку.
+ * <p>
+ * Класс не потокобезопасен.
+ */
+public class LongIntMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    public LongIntMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * @return количество элементов
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param key ключ
+     * @return значение или -1, если ключа нет
+     */
+    public int get(long key) {
+        long[] keys = this.keys;
+        int[] values = this.values;
+        int length = Math.min(keys.length, values.length);
+        int mask = length - 1;
+        int slot = hash(key) & mask;
+        for (int probes = 0; probes < length; probes++) {
+            int value = values[slot];
+            if (value == 0) return -1;
+            if (keys[slot] == key) return value - 1;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Кладёт значение по ключу.
+     * @param key   ключ
+     * @param value значение (неотрицательное)
+     */
+    public void put(long key, int value) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != 0) {
+            if (keys[slot] == key) {
+                values[slot] = value + 1;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value + 1;
+        if (++size > keys.length / 4 * 3) resize(keys.length * 2);
+    }
+
+    /**
+     * Удаляет ключ.
+     * @param key ключ
+     * @return удалённое значение или -1, если ключа не было
+     */
+    public int remove(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != 0) {
+            if (keys[slot] == key) {
+                int previous = values[slot] - 1;
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Удаляет все элементы.
+     */
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    private void shiftBack(int hole) {
+        int mask = keys.length - 1;
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == 0) break;
+            int home = hash(keys[slot]) & mask;
+            boolean between = hole <= slot ? hole < home && home <= slot : hole < home || home <= slot;
+            if (!between) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        values[hole] = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == 0) continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (values[slot] != 0) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        values = new int[capacity];
+        keys = new long[capacity];
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
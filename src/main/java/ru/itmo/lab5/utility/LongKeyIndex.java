@@ -0,0 +1,331 @@
+package ru.itmo.lab5.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Упорядоченное множество примитивных ключей long.
+ * <p>
+ * Ключи хранятся в отсортированных блоках (массивах long) не длиннее {@value #BLOCK_SIZE},
+ * блоки упорядочены между собой. Поиск блока и позиции в нём выполняется двоичным
+ * поиском, переполненный блок делится пополам. Удаление всех ключей меньше или больше
+ * заданного отбрасывает целые блоки с края и сдвигает только один граничный блок,
+ * поэтому стоит O(log n + k), где k — количество удалённых ключей.
+ * <p>
+ * Класс не потокобезопасен.
+ */
+public class LongKeyIndex {
+    private static final int BLOCK_SIZE = 512;
+
+    private final List<Block> blocks = new ArrayList<>();
+    private int size;
+
+    /**
+     * @return количество ключей
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true, если ключей нет
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return наименьший ключ
+     * @throws NoSuchElementException если ключей нет
+     */
+    public long first() {
+        if (size == 0) throw new NoSuchElementException();
+        return blocks.get(0).keys[0];
+    }
+
+    /**
+     * @return наибольший ключ
+     * @throws NoSuchElementException если ключей нет
+     */
+    public long last() {
+        if (size == 0) throw new NoSuchElementException();
+        return blocks.get(blocks.size() - 1).last();
+    }
+
+    /**
+     * @param key ключ
+     * @return true, если ключ есть в множестве
+     */
+    public boolean contains(long key) {
+        int b = blockFor(key);
+        return b < blocks.size() && blocks.get(b).indexOf(key) >= 0;
+    }
+
+    /**
+     * Добавляет ключ.
+     * @param key ключ
+     * @return true, если ключа ещё не было
+     */
+    public boolean add(long key) {
+        if (blocks.isEmpty()) {
+            Block block = new Block();
+            block.insert(0, key);
+            blocks.add(block);
+            size++;
+            return true;
+        }
+        int b = Math.min(blockFor(key), blocks.size() - 1);
+        Block block = blocks.get(b);
+        int index = block.indexOf(key);
+        if (index >= 0) return false;
+
+        block.insert(-index - 1, key);
+        if (block.size == BLOCK_SIZE) blocks.add(b + 1, block.split());
+        size++;
+        return true;
+    }
+
+    /**
+     * Удаляет ключ.
+     * @param key ключ
+     * @return true, если ключ был в множестве
+     */
+    public boolean remove(long key) {
+        int b = blockFor(key);
+        if (b == blocks.size()) return false;
+        Block block = blocks.get(b);
+        int index = block.indexOf(key);
+        if (index < 0) return false;
+
+        block.delete(index, index + 1);
+        if (block.size == 0) blocks.remove(b);
+        size--;
+        return true;
+    }
+
+    /**
+     * Удаляет все ключи меньше заданного.
+     * @param bound граница (не включительно)
+     * @param removed получатель удалённых ключей (в порядке возрастания)
+     * @return количество удалённых ключей
+     */
+    public int removeBelow(long bound, LongConsumer removed) {
+        int whole = blockFor(bound);
+        int count = 0;
+        for (int b = 0; b < whole; b++) count += blocks.get(b).drain(0, blocks.get(b).size, removed);
+        blocks.subList(0, whole).clear();
+
+        if (!blocks.isEmpty()) {
+            Block block = blocks.get(0);
+            int index = block.indexOf(bound);
+            int end = index >= 0 ? index : -index - 1;
+            count += block.drain(0, end, removed);
+            block.delete(0, end);
+        }
+        size -= count;
+        return count;
+    }
+
+    /**
+     * Удаляет все ключи больше заданного.
+     * @param bound граница (не включительно)
+     * @param removed получатель удалённых ключей (в порядке возрастания)
+     * @return количество удалённых ключей
+     */
+    public int removeAbove(long bound, LongConsumer removed) {
+        int b = blockFor(bound);
+        int count = 0;
+        if (b < blocks.size()) {
+            Block block = blocks.get(b);
+            int index = block.indexOf(bound);
+            int start = index >= 0 ? index + 1 : -index - 1;
+            count += block.drain(start, block.size, removed);
+            block.delete(start, block.size);
+            if (block.size > 0) b++;
+            for (int i = b; i < blocks.size(); i++) count += blocks.get(i).drain(0, blocks.get(i).size, removed);
+            blocks.subList(b, blocks.size()).clear();
+        }
+        size -= count;
+        return count;
+    }
+
+    /**
+     * Удаляет пакет ключей за один проход по блокам: блоки, в которые не попал ни один
+     * ключ пакета, пропускаются целиком, остальные уплотняются на месте, опустевшие
+     * блоки отбрасываются.
+     * @param sorted удаляемые ключи в порядке возрастания
+     * @return количество удалённых ключей
+     */
+    public int removeAll(long[] sorted) {
+        int count = 0;
+        int i = 0;
+        int kept = 0;
+        for (int b = 0; b < blocks.size(); b++) {
+            Block block = blocks.get(b);
+            while (i < sorted.length && sorted[i] < block.keys[0]) i++;
+            if (i < sorted.length && sorted[i] <= block.last()) {
+                int size = 0;
+                for (int r = 0; r < block.size; r++) {
+                    long key = block.keys[r];
+                    while (i < sorted.length && sorted[i] < key) i++;
+                    if (i < sorted.length && sorted[i] == key) i++;
+                    else block.keys[size++] = key;
+                }
+                count += block.size - size;
+                block.size = size;
+            }
+            if (block.size > 0) blocks.set(kept++, block);
+        }
+        blocks.subList(kept, blocks.size()).clear();
+        size -= count;
+        return count;
+    }
+
+    /**
+     * Удаляет все ключи.
+     */
+    public void clear() {
+        blocks.clear();
+        size = 0;
+    }
+
+    /**
+     * Обходит ключи в порядке возрастания.
+     * @param action действие над ключом
+     */
+    public void forEach(LongConsumer action) {
+        for (Block block : blocks) block.drain(0, block.size, action);
+    }
+
+    /**
+     * Обходит в порядке возрастания ключи из диапазона [from, to].
+     * @param from нижняя граница (включительно)
+     * @param to   верхняя граница (включительно)
+     * @param action действие над ключом
+     */
+    public void forEachInRange(long from, long to, LongConsumer action) {
+        forEachInRange(from, to, Integer.MAX_VALUE, action);
+    }
+
+    /**
+     * Обходит в порядке возрастания не более limit первых ключей из диапазона [from, to].
+     * @param from  нижняя граница (включительно)
+     * @param to    верхняя граница (включительно)
+     * @param limit наибольшее количество ключей
+     * @param action действие над ключом
+     * @return количество обойдённых ключей
+     */
+    public int forEachInRange(long from, long to, int limit, LongConsumer action) {
+        int count = 0;
+        for (int b = blockFor(from); b < blocks.size(); b++) {
+            Block block = blocks.get(b);
+            int index = block.indexOf(from);
+            for (int i = index >= 0 ? index : -index - 1; i < block.size; i++) {
+                if (block.keys[i] > to || count == limit) return count;
+                action.accept(block.keys[i]);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Обходит в порядке возрастания ключи из диапазона [from, to], пока действие возвращает true.
+     * @param from нижняя граница (включительно)
+     * @param to   верхняя граница (включительно)
+     * @param action действие над ключом; false прекращает обход
+     */
+    public void forEachInRangeWhile(long from, long to, LongPredicate action) {
+        for (int b = blockFor(from); b < blocks.size(); b++) {
+            Block block = blocks.get(b);
+            int index = block.indexOf(from);
+            for (int i = index >= 0 ? index : -index - 1; i < block.size; i++) {
+                if (block.keys[i] > to || !action.test(block.keys[i])) return;
+            }
+        }
+    }
+
+    /**
+     * Находит первый блок, последний ключ которого не меньше заданного.
+     * Если такого нет, возвращает количество блоков.
+     */
+    private int blockFor(long key) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blocks.get(mid).last() < key) low = mid + 1;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    /**
+     * Отсортированный блок ключей.
+     */
+    private static class Block {
+        private long[] keys;
+        private int size;
+
+        private Block() {
+            this(new long[16], 0);
+        }
+
+        private Block(long[] keys, int size) {
+            this.keys = keys;
+            this.size = size;
+        }
+
+        private long last() {
+            return keys[size - 1];
+        }
+
+        private int indexOf(long key) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] < key) low = mid + 1;
+                else if (keys[mid] > key) high = mid - 1;
+                else return mid;
+            }
+            return -(low + 1);
+        }
+
+        private void insert(int index, long key) {
+            if (size == keys.length) {
+                long[] grown = new long[Math.min(keys.length * 2, BLOCK_SIZE)];
+                System.arraycopy(keys, 0, grown, 0, size);
+                keys = grown;
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            keys[index] = key;
+            size++;
+        }
+
+        private void delete(int from, int to) {
+            System.arraycopy(keys, to, keys, from, size - to);
+            size -= to - from;
+        }
+
+        private int drain(int from, int to, LongConsumer action) {
+            for (int i = from; i < to; i++) action.accept(keys[i]);
+            return to - from;
+        }
+
+        /**
+         * Переносит верхнюю половину ключей в новый блок.
+         */
+        private Block split() {
+            int half = size / 2;
+            long[] upper = new long[BLOCK_SIZE];
+            System.arraycopy(keys, half, upper, 0, size - half);
+            Block block = new Block(upper, size - half);
+            size = half;
+            return block;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package ru.itmo.lab5.utility;
+
+import ru.itmo.lab5.data.Product;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Хеш-таблица с открытой адресацией из примитивных ключей long в продукты.
+ * <p>
+ * Ключи и значения хранятся в двух параллельных массивах, без упаковки ключей
+ * в Long и без объектов-узлов. Коллизии разрешаются линейным пробированием,
+ * удаление выполняется обратным сдвигом, поэтому «надгробий» в таблице не бывает.
+ * Пустая ячейка обозначается значением null, поэтому null хранить нельзя.
+ * <p>
+ * Класс не потокобезопасен. Метод {@link #get(long)} не падает при одновременном
+ * изменении таблицы и может использоваться для оптимистичного чтения, если результат
+ * затем проверяется (например, через {@link java.util.concurrent.locks.StampedLock#validate(long)}).
+ */
+public class LongProductMap implements ProductStore {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Product[] values;
+    private int size;
+
+    public LongProductMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize ожидаемое количество элементов
+     */
+    public LongProductMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @return количество элементов
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true, если таблица пуста
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Возвращает продукт по ключу.
+     * @param key ключ
+     * @return продукт или null, если ключа нет
+     */
+    @Override
+    public Product get(long key) {
+        long[] keys = this.keys;
+        Product[] values = this.values;
+        int length = Math.min(keys.length, values.length);
+        int mask = length - 1;
+        int slot = hash(key) & mask;
+        for (int probes = 0; probes < length; probes++) {
+            Product value = values[slot];
+            if (value == null) return null;
+            if (keys[slot] == key) return value;
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @param key ключ
+     * @return true, если ключ есть в таблице
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Кладёт продукт по ключу.
+     * @param key   ключ
+     * @param value продукт (не null)
+     * @return предыдущее значение или null
+     */
+    @Override
+    public Product put(long key, Product value) {
+        if (value == null) throw new NullPointerException("Значение не может быть null");
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                Product previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > threshold()) resize(keys.length * 2);
+        return null;
+    }
+
+    /**
+     * Удаляет ключ.
+     * @param key ключ
+     * @return удалённое значение или null, если ключа не было
+     */
+    @Override
+    public Product remove(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                Product previous = values[slot];
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Удаляет все элементы.
+     */
+    @Override
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    /**
+     * Обходит все элементы в порядке ячеек таблицы.
+     * @param action действие над продуктом и его ключом
+     */
+    public void forEach(ObjLongConsumer<Product> action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) action.accept(values[i], keys[i]);
+        }
+    }
+
+    /**
+     * Считает статистику цен, сворачивая ячейки таблицы без промежуточного списка.
+     */
+    @Override
+    public PriceAggregate aggregatePrices(PriceAggregate.Grouping grouping) {
+        Product[] values = this.values;
+        return PriceAggregate.reduce(values.length, grouping, (part, from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (values[i] != null) part.add(values[i]);
+            }
+        });
+    }
+
+    /**
+     * Заполняет освободившуюся ячейку элементами, сдвинутыми пробированием дальше своей позиции.
+     */
+    private void shiftBack(int hole) {
+        int mask = keys.length - 1;
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == null) break;
+            int home = hash(keys[slot]) & mask;
+            boolean between = hole <= slot ? hole < home && home <= slot : hole < home || home <= slot;
+            if (!between) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        values[hole] = null;
+    }
+
+    private void insertNew(long key, Product value) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != null) slot = (slot + 1) & mask;
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Product[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) insertNew(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        Product[] newValues = new Product[capacity];
+        long[] newKeys = new long[capacity];
+        // Значения заменяются первыми: оптимистичный читатель видит массивы разной длины
+        // или пустую таблицу, но не выходит за границы.
+        values = newValues;
+        keys = newKeys;
+    }
+
+    private int threshold() {
+        return keys.length / 4 * 3;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity / 4 * 3 < expectedSize) capacity <<= 1;
+        return capacity;
+    }
+
+    /**
+     * Перемешивает биты ключа, чтобы последовательные ключи не занимали соседние ячейки.
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "LongProductMap{size=" + size + ", capacity=" + keys.length + "}";
+    }
+}
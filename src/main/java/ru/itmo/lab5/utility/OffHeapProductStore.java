@@ -0,0 +1,392 @@
+package ru.itmo.lab5.utility;
+
+import ru.itmo.lab5.data.Color;
+import ru.itmo.lab5.data.Coordinates;
+import ru.itmo.lab5.data.Country;
+import ru.itmo.lab5.data.Location;
+import ru.itmo.lab5.data.Person;
+import ru.itmo.lab5.data.Product;
+import ru.itmo.lab5.data.UnitOfMeasure;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Хранилище продуктов вне кучи Java.
+ * <p>
+ * Записи кодируются в прямые (direct) буферы по {@value #CHUNK_SIZE} байт. Каждая запись
+ * начинается с заголовка {@code [ёмкость][длина]}, длина -1 означает удалённую запись.
+ * В куче остаются только буферы, таблица {@link LongIntMap} из ключа в ячейку и столбец
+ * адресов записей по ячейкам (номер буфера в старших 32 битах, смещение в младших),
+ * поэтому объём работы сборщика мусора не зависит от размера коллекции. Ячейки плотные:
+ * на место удалённой переносится последняя, её ключ читается из самой записи.
+ * <p>
+ * Обновление, которое помещается в прежнюю ёмкость записи, пишется на место, иначе запись
+ * переносится в конец. Занятые и живые байты учитываются; когда мёртвых байт становится
+ * больше половины, живые записи уплотняются в новые буферы.
+ * <p>
+ * Класс не потокобезопасен.
+ */
+public class OffHeapProductStore implements ProductStore {
+    private static final int CHUNK_SIZE = 1 << 24;
+    private static final int MIN_CAPACITY = 16;
+    private static final int HEADER = 8;
+    private static final int FREED = -1;
+
+    private static final byte HAS_X = 1;
+    private static final byte HAS_Y = 2;
+    private static final byte HAS_DATE = 4;
+    private static final byte HAS_PRICE = 8;
+    private static final byte HAS_OWNER = 16;
+    private static final byte HAS_LOCATION = 32;
+
+    private static final UnitOfMeasure[] UNITS = UnitOfMeasure.values();
+    private static final Color[] COLORS = Color.values();
+    private static final Country[] COUNTRIES = Country.values();
+
+    private final LongIntMap slots = new LongIntMap();
+    /** Адрес записи по номеру ячейки */
+    private long[] addresses = new long[MIN_CAPACITY];
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    /** Заполненная часть каждого буфера */
+    private int[] tops = new int[4];
+    private long usedBytes;
+    private long liveBytes;
+    private int size;
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Product get(long key) {
+        long[] addresses = this.addresses;
+        int slot = slots.get(key);
+        return slot < 0 || slot >= addresses.length ? null : read(addresses[slot]);
+    }
+
+    @Override
+    public Product put(long key, Product product) {
+        if (product == null) throw new NullPointerException("Значение не может быть null");
+        int slot = slots.get(key);
+        long address = slot < 0 ? -1 : addresses[slot];
+        Product previous = slot < 0 ? null : read(address);
+        int length = encode(key, product);
+
+        if (slot >= 0 && capacityAt(address) >= length) {
+            write(address, length);
+            return previous;
+        }
+        if (slot >= 0) {
+            free(address);
+        } else {
+            if (size == addresses.length) addresses = Arrays.copyOf(addresses, size * 2);
+            slot = size++;
+            slots.put(key, slot);
+        }
+        long allocated = allocate(length);
+        write(allocated, length);
+        addresses[slot] = allocated;
+        compactIfSparse();
+        return previous;
+    }
+
+    @Override
+    public Product remove(long key) {
+        int slot = slots.get(key);
+        if (slot < 0) return null;
+        Product removed = read(addresses[slot]);
+        delete(key);
+        compactIfSparse();
+        return removed;
+    }
+
+    /**
+     * Удаляет пакет ключей, не декодируя записи; уплотнение проверяется один раз в конце.
+     */
+    @Override
+    public void removeAll(long[] keys) {
+        for (long key : keys) delete(key);
+        compactIfSparse();
+    }
+
+    @Override
+    public void clear() {
+        slots.clear();
+        addresses = new long[MIN_CAPACITY];
+        chunks.clear();
+        tops = new int[4];
+        usedBytes = 0;
+        liveBytes = 0;
+        size = 0;
+    }
+
+    /**
+     * Считает статистику цен прямо по записям: из каждой читаются только флаги, цена
+     * и порядковый номер группирующего поля, строки пропускаются по длине без декодирования.
+     * Параллельная свёртка идёт по частям столбца адресов.
+     */
+    @Override
+    public PriceAggregate aggregatePrices(PriceAggregate.Grouping grouping) {
+        long[] live = addresses;
+        return PriceAggregate.reduce(size, grouping, (part, from, to) -> {
+            for (int i = from; i < to; i++) addPrice(part, grouping, live[i]);
+        });
+    }
+
+    /**
+     * Добавляет цену записи в накопитель, читая буфер абсолютными методами,
+     * поэтому может вызываться из нескольких потоков.
+     */
+    private void addPrice(PriceAggregate part, PriceAggregate.Grouping grouping, long address) {
+        ByteBuffer chunk = chunks.get(chunkOf(address));
+        int position = offsetOf(address) + HEADER + 8;
+        byte f = chunk.get(position++);
+        position = skipString(chunk, position) + 4 + 8 + 8;
+        int price = chunk.getInt(position);
+        int group = chunk.get(position + 4);
+        if (grouping != PriceAggregate.Grouping.UNIT) {
+            if ((f & HAS_OWNER) == 0) {
+                group = -1;
+            } else {
+                position = skipString(chunk, skipString(chunk, position + 5));
+                group = chunk.get(grouping == PriceAggregate.Grouping.COLOR ? position : position + 1);
+            }
+        }
+        part.add(group, (f & HAS_PRICE) != 0, price);
+    }
+
+    /**
+     * @return позиция сразу за строкой, которая начинается в position
+     */
+    private static int skipString(ByteBuffer chunk, int position) {
+        return position + 4 + Math.max(chunk.getInt(position), 0);
+    }
+
+    /**
+     * @return байт, занятых записями, включая удалённые
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return байт, занятых живыми записями
+     */
+    public long getLiveBytes() {
+        return liveBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapProductStore{size=" + size + ", chunks=" + chunks.size()
+                + ", used=" + usedBytes + ", live=" + liveBytes + "}";
+    }
+
+    /**
+     * Удаляет запись, перенося на её ячейку последнюю.
+     */
+    private void delete(long key) {
+        int slot = slots.remove(key);
+        if (slot < 0) return;
+        free(addresses[slot]);
+        int last = --size;
+        if (slot != last) {
+            long moved = addresses[last];
+            addresses[slot] = moved;
+            slots.put(chunks.get(chunkOf(moved)).getLong(offsetOf(moved) + HEADER), slot);
+        }
+    }
+
+    /**
+     * Переносит живые записи в новые буферы и освобождает старые; ячейки не меняются.
+     */
+    private void compactIfSparse() {
+        if (usedBytes < CHUNK_SIZE || liveBytes * 2 > usedBytes) return;
+        List<ByteBuffer> old = new ArrayList<>(chunks);
+        chunks.clear();
+        tops = new int[4];
+        usedBytes = 0;
+        liveBytes = 0;
+        for (int slot = 0; slot < size; slot++) {
+            long address = addresses[slot];
+            ByteBuffer chunk = old.get(chunkOf(address)).duplicate();
+            int offset = offsetOf(address);
+            int length = chunk.getInt(offset + 4);
+            chunk.limit(offset + HEADER + length).position(offset + HEADER);
+
+            long moved = allocate(length);
+            ByteBuffer target = chunks.get(chunkOf(moved)).duplicate();
+            target.position(offsetOf(moved) + HEADER);
+            target.put(chunk);
+            chunks.get(chunkOf(moved)).putInt(offsetOf(moved) + 4, length);
+            addresses[slot] = moved;
+        }
+    }
+
+    /**
+     * Выделяет место под запись и возвращает её адрес.
+     */
+    private long allocate(int length) {
+        int capacity = (length + 7) & ~7;
+        int needed = HEADER + capacity;
+        int c = chunks.size() - 1;
+        if (c < 0 || tops[c] + needed > chunks.get(c).capacity()) {
+            chunks.add(ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, needed)));
+            c++;
+            if (c == tops.length) tops = Arrays.copyOf(tops, c * 2);
+            tops[c] = 0;
+        }
+        int offset = tops[c];
+        chunks.get(c).putInt(offset, capacity);
+        tops[c] += needed;
+        usedBytes += needed;
+        liveBytes += needed;
+        return address(c, offset);
+    }
+
+    private void free(long address) {
+        ByteBuffer chunk = chunks.get(chunkOf(address));
+        int offset = offsetOf(address);
+        chunk.putInt(offset + 4, FREED);
+        liveBytes -= HEADER + chunk.getInt(offset);
+    }
+
+    private int capacityAt(long address) {
+        return chunks.get(chunkOf(address)).getInt(offsetOf(address));
+    }
+
+    /**
+     * Копирует закодированную запись из рабочего буфера по адресу.
+     */
+    private void write(long address, int length) {
+        ByteBuffer chunk = chunks.get(chunkOf(address));
+        int offset = offsetOf(address);
+        ByteBuffer target = chunk.duplicate();
+        target.position(offset + HEADER);
+        target.put(scratch.array(), 0, length);
+        chunk.putInt(offset + 4, length);
+    }
+
+    /**
+     * Кодирует продукт в рабочий буфер.
+     * @return длина записи
+     */
+    private int encode(long key, Product product) {
+        while (true) {
+            try {
+                scratch.clear();
+                Coordinates coordinates = product.getCoordinates();
+                Person owner = product.getOwner();
+                byte f = 0;
+                if (coordinates != null && coordinates.getX() != null) f |= HAS_X;
+                if (coordinates != null && coordinates.getY() != null) f |= HAS_Y;
+                f |= HAS_DATE;
+                if (product.getPrice() != null) f |= HAS_PRICE;
+                if (owner != null) f |= HAS_OWNER;
+                if (owner != null && owner.getLocation() != null) f |= HAS_LOCATION;
+
+                scratch.putLong(key).put(f);
+                putString(product.getName());
+                scratch.putInt((f & HAS_X) != 0 ? coordinates.getX() : 0);
+                scratch.putDouble((f & HAS_Y) != 0 ? coordinates.getY() : 0);
+                scratch.putLong(product.getCreationTime());
+                scratch.putInt((f & HAS_PRICE) != 0 ? product.getPrice() : 0);
+                scratch.put(ordinal(product.getUnitOfMeasure()));
+                if (owner != null) {
+                    putString(owner.getName());
+                    putString(owner.getPassportID());
+                    scratch.put(ordinal(owner.getHairColor())).put(ordinal(owner.getNationality()));
+                    Location location = owner.getLocation();
+                    if (location != null) {
+                        scratch.putLong(location.getX()).putInt(location.getY());
+                        putString(location.getName());
+                    }
+                }
+                return scratch.position();
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    private void putString(String s) {
+        if (s == null) {
+            scratch.putInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        scratch.putInt(bytes.length).put(bytes);
+    }
+
+    /**
+     * Собирает продукт из записи. Читает копию буфера, поэтому не меняет его состояние.
+     */
+    private Product read(long address) {
+        ByteBuffer in = chunks.get(chunkOf(address)).duplicate();
+        in.position(offsetOf(address) + HEADER);
+
+        long id = in.getLong();
+        byte f = in.get();
+        String name = getString(in);
+        int x = in.getInt();
+        double y = in.getDouble();
+        long created = in.getLong();
+        int price = in.getInt();
+        byte unit = in.get();
+        Person owner = null;
+        if ((f & HAS_OWNER) != 0) {
+            String ownerName = getString(in);
+            String passportID = getString(in);
+            byte hairColor = in.get();
+            byte nationality = in.get();
+            Location location = null;
+            if ((f & HAS_LOCATION) != 0) {
+                long locationX = in.getLong();
+                int locationY = in.getInt();
+                location = new Location(locationX, locationY, getString(in));
+            }
+            owner = new Person(ownerName, passportID, hairColor < 0 ? null : COLORS[hairColor],
+                    nationality < 0 ? null : COUNTRIES[nationality], location);
+        }
+        Coordinates coordinates = (f & (HAS_X | HAS_Y)) == 0 ? null
+                : new Coordinates((f & HAS_X) != 0 ? x : null, (f & HAS_Y) != 0 ? y : null);
+        return new Product(id, name, coordinates,
+                (f & HAS_DATE) != 0 ? Instant.ofEpochMilli(created) : null,
+                (f & HAS_PRICE) != 0 ? price : null,
+                unit < 0 ? null : UNITS[unit], owner);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        // при оптимистичном чтении длина может оказаться мусором
+        if (length > in.remaining()) throw new IllegalStateException("Запись повреждена");
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte ordinal(Enum<?> value) {
+        return value == null ? -1 : (byte) value.ordinal();
+    }
+
+    private static long address(int chunk, int offset) {
+        return ((long) chunk << 32) | offset;
+    }
+
+    private static int chunkOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+}
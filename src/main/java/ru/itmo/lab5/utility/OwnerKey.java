@@ -0,0 +1,52 @@
+package ru.itmo.lab5.utility;
+
+import ru.itmo.lab5.data.Person;
+
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Ключ владельца (имя, номер паспорта) для хеш-таблиц и деревьев индексов владельцев.
+ * Значение null в имени или паспорте считается меньше любой строки.
+ */
+final class OwnerKey {
+    /** Порядок по номеру паспорта, затем по имени */
+    static final Comparator<OwnerKey> BY_PASSPORT = (a, b) -> {
+        int c = compare(a.passportID, b.passportID);
+        return c != 0 ? c : compare(a.name, b.name);
+    };
+
+    final String name;
+    final String passportID;
+
+    OwnerKey(Person owner) {
+        this(owner.getName(), owner.getPassportID());
+    }
+
+    OwnerKey(String name, String passportID) {
+        this.name = name;
+        this.passportID = passportID;
+    }
+
+    /**
+     * Сравнивает строки, считая null меньше любой строки.
+     */
+    static int compare(String a, String b) {
+        if (a == null) return b == null ? 0 : -1;
+        if (b == null) return 1;
+        return a.compareTo(b);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof OwnerKey)) return false;
+        OwnerKey key = (OwnerKey) o;
+        return Objects.equals(name, key.name) && Objects.equals(passportID, key.passportID);
+    }
+
+    @Override
+    public int hashCode() {
+        // короткие похожие строки дают близкие хеши, поэтому первый перемешивается умножением
+        return Objects.hashCode(name) * 0x9E3779B1 + Objects.hashCode(passportID);
+    }
+}
@@ -0,0 +1,224 @@
+package ru.itmo.lab5.utility;
+
+import ru.itmo.lab5.data.Person;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Индекс владельцев с подсчётом ранга: декартово дерево (treap) по ключу
+ * (имя, номер паспорта) в порядке {@link Person#compareTo(Person)}.
+ * <p>
+ * Одинаковые владельцы хранятся в одном узле со счётчиком повторений, каждый узел
+ * знает суммарное количество владельцев в своём поддереве. Поэтому добавление,
+ * удаление и подсчёт владельцев меньше заданного выполняются за ожидаемое O(log n).
+ * Большой пакет владельцев удаляется одним обходом дерева, в котором крупные
+ * поддеревья обрабатываются параллельно.
+ * Значение null в имени или паспорте считается меньше любой строки.
+ * <p>
+ * Класс не потокобезопасен.
+ */
+public class OwnerRankIndex {
+    /** Размер поддерева, начиная с которого левое поддерево обходится в отдельной задаче */
+    private static final int FORK_THRESHOLD = 1 << 13;
+
+    private Node root;
+    private long seed = 0x2545F4914F6CDD1DL;
+
+    /**
+     * Добавляет владельца.
+     * @param owner владелец
+     */
+    public void add(Person owner) {
+        root = insert(root, owner.getName(), owner.getPassportID());
+    }
+
+    /**
+     * Удаляет одно вхождение владельца.
+     * @param owner владелец
+     */
+    public void remove(Person owner) {
+        root = delete(root, owner.getName(), owner.getPassportID());
+    }
+
+    /**
+     * Удаляет по одному вхождению каждого владельца пакета. Вхождения большого пакета
+     * подсчитываются в хеш-таблице и снимаются одним обходом дерева.
+     * @param owners владельцы
+     */
+    public void removeAll(Person[] owners) {
+        if (BatchRemoval.byLookup(owners.length, size())) {
+            for (Person owner : owners) remove(owner);
+            return;
+        }
+        Map<OwnerKey, Integer> batch = new HashMap<>();
+        for (Person owner : owners) batch.merge(new OwnerKey(owner), 1, Integer::sum);
+        root = deleteAll(root, batch);
+    }
+
+    /**
+     * Удаляет всех владельцев.
+     */
+    public void clear() {
+        root = null;
+    }
+
+    /**
+     * @return общее количество добавленных владельцев (с повторениями)
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Считает владельцев, которые меньше заданного.
+     * @param owner владелец, с которым сравниваются остальные
+     * @return количество меньших владельцев (с повторениями)
+     */
+    public int rank(Person owner) {
+        String name = owner.getName();
+        String passportID = owner.getPassportID();
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            int c = compare(name, passportID, node);
+            if (c < 0) {
+                node = node.left;
+            } else if (c > 0) {
+                rank += size(node.left) + node.count;
+                node = node.right;
+            } else {
+                return rank + size(node.left);
+            }
+        }
+        return rank;
+    }
+
+    private Node insert(Node node, String name, String passportID) {
+        if (node == null) return new Node(name, passportID, nextPriority());
+        int c = compare(name, passportID, node);
+        if (c == 0) {
+            node.count++;
+        } else if (c < 0) {
+            node.left = insert(node.left, name, passportID);
+            if (node.left.priority > node.priority) node = rotateRight(node);
+        } else {
+            node.right = insert(node.right, name, passportID);
+            if (node.right.priority > node.priority) node = rotateLeft(node);
+        }
+        node.update();
+        return node;
+    }
+
+    private Node delete(Node node, String name, String passportID) {
+        if (node == null) return null;
+        int c = compare(name, passportID, node);
+        if (c == 0) {
+            if (node.count > 1) node.count--;
+            else return merge(node.left, node.right);
+        } else if (c < 0) {
+            node.left = delete(node.left, name, passportID);
+        } else {
+            node.right = delete(node.right, name, passportID);
+        }
+        node.update();
+        return node;
+    }
+
+    /**
+     * Удаляет из поддерева вхождения владельцев пакета. Таблица пакета только читается,
+     * поэтому поддеревья можно обходить параллельно.
+     */
+    private static Node deleteAll(Node node, Map<OwnerKey, Integer> batch) {
+        if (node == null) return null;
+        if (node.size >= FORK_THRESHOLD) {
+            Node left = node.left;
+            ForkJoinTask<Node> task = ForkJoinTask.adapt(() -> deleteAll(left, batch)).fork();
+            node.right = deleteAll(node.right, batch);
+            node.left = task.join();
+        } else {
+            node.left = deleteAll(node.left, batch);
+            node.right = deleteAll(node.right, batch);
+        }
+        Integer removed = batch.get(new OwnerKey(node.name, node.passportID));
+        if (removed != null) node.count -= removed;
+        if (node.count <= 0) return merge(node.left, node.right);
+        node.update();
+        return node;
+    }
+
+    /**
+     * Сливает два поддерева, все ключи левого из которых меньше ключей правого.
+     */
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        node.update();
+        left.right = node;
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        node.update();
+        right.left = node;
+        return right;
+    }
+
+    private static int compare(String name, String passportID, Node node) {
+        int c = OwnerKey.compare(name, node.name);
+        return c != 0 ? c : OwnerKey.compare(passportID, node.passportID);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Генератор приоритетов xorshift: детерминированный и без лишних объектов.
+     */
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int) seed;
+    }
+
+    /**
+     * Узел дерева.
+     */
+    private static class Node {
+        private final String name;
+        private final String passportID;
+        private final int priority;
+        private int count = 1;
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        private Node(String name, String passportID, int priority) {
+            this.name = name;
+            this.passportID = passportID;
+            this.priority = priority;
+        }
+
+        private void update() {
+            size = count + OwnerRankIndex.size(left) + OwnerRankIndex.size(right);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package ru.itmo.lab5.utility;
+
+import ru.itmo.lab5.data.Color;
+import ru.itmo.lab5.data.Country;
+import ru.itmo.lab5.data.Person;
+import ru.itmo.lab5.data.Product;
+import ru.itmo.lab5.data.UnitOfMeasure;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Статистика цен продуктов по группам: количество продуктов, а также сумма, минимум,
+ * максимум и среднее цены среди продуктов, у которых она задана.
+ * <p>
+ * Группа — порядковый номер значения перечисления, поэтому накопители — это примитивные
+ * массивы длиной в число значений плюс одна ячейка для продуктов без значения.
+ * Строки (продукты списка или ячейки столбцового хранилища) делятся на части
+ * по {@value #CHUNK_SIZE}, части сворачиваются параллельно в собственные накопители,
+ * которые затем складываются.
+ */
+public class PriceAggregate {
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    /**
+     * Поле, по которому группируются продукты.
+     */
+    public enum Grouping {
+        /** Единица измерения */
+        UNIT(UnitOfMeasure.values()),
+        /** Национальность владельца */
+        COUNTRY(Country.values()),
+        /** Цвет волос владельца */
+        COLOR(Color.values());
+
+        private final Enum<?>[] values;
+
+        Grouping(Enum<?>[] values) {
+            this.values = values;
+        }
+
+        /**
+         * @return номер группы продукта; значения нет — номер последней ячейки
+         */
+        private int groupOf(Product product) {
+            Enum<?> value;
+            if (this == UNIT) {
+                value = product.getUnitOfMeasure();
+            } else {
+                Person owner = product.getOwner();
+                value = owner == null ? null : this == COUNTRY ? owner.getNationality() : owner.getHairColor();
+            }
+            return value == null ? values.length : value.ordinal();
+        }
+    }
+
+    private final Grouping grouping;
+    private final long[] counts;
+    private final long[] priced;
+    private final long[] sums;
+    private final int[] mins;
+    private final int[] maxs;
+
+    private PriceAggregate(Grouping grouping) {
+        int groups = grouping.values.length + 1;
+        this.grouping = grouping;
+        counts = new long[groups];
+        priced = new long[groups];
+        sums = new long[groups];
+        mins = new int[groups];
+        maxs = new int[groups];
+        Arrays.fill(mins, Integer.MAX_VALUE);
+        Arrays.fill(maxs, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Считает статистику цен по группам.
+     * @param products продукты
+     * @param grouping поле группировки
+     * @return статистика
+     */
+    public static PriceAggregate of(List<Product> products, Grouping grouping) {
+        return reduce(products.size(), grouping, (part, from, to) -> {
+            for (int i = from; i < to; i++) part.add(products.get(i));
+        });
+    }
+
+    /**
+     * Параллельно сворачивает строки [0, size).
+     * @param size     количество строк
+     * @param grouping поле группировки
+     * @param rows     добавляет строки [from, to) в накопитель части
+     * @return статистика
+     */
+    static PriceAggregate reduce(int size, Grouping grouping, Rows rows) {
+        return IntStream.range(0, (size + CHUNK_SIZE - 1) / CHUNK_SIZE)
+                .parallel()
+                .mapToObj(chunk -> {
+                    PriceAggregate part = new PriceAggregate(grouping);
+                    rows.addTo(part, chunk * CHUNK_SIZE, Math.min(size, chunk * CHUNK_SIZE + CHUNK_SIZE));
+                    return part;
+                })
+                .reduce(PriceAggregate::merge)
+                .orElseGet(() -> new PriceAggregate(grouping));
+    }
+
+    /**
+     * @return количество групп, включая группу продуктов без значения
+     */
+    public int groups() {
+        return counts.length;
+    }
+
+    /**
+     * @param group номер группы
+     * @return название группы (значение перечисления или null для продуктов без значения)
+     */
+    public String label(int group) {
+        return group < grouping.values.length ? grouping.values[group].name() : null;
+    }
+
+    /**
+     * @param group номер группы
+     * @return количество продуктов в группе
+     */
+    public long count(int group) {
+        return counts[group];
+    }
+
+    /**
+     * @param group номер группы
+     * @return количество продуктов группы с ценой
+     */
+    public long priced(int group) {
+        return priced[group];
+    }
+
+    /**
+     * @param group номер группы
+     * @return сумма цен группы
+     */
+    public long sum(int group) {
+        return sums[group];
+    }
+
+    /**
+     * @param group номер группы
+     * @return наименьшая цена группы (имеет смысл, если {@link #priced(int)} больше нуля)
+     */
+    public int min(int group) {
+        return mins[group];
+    }
+
+    /**
+     * @param group номер группы
+     * @return наибольшая цена группы (имеет смысл, если {@link #priced(int)} больше нуля)
+     */
+    public int max(int group) {
+        return maxs[group];
+    }
+
+    /**
+     * @param group номер группы
+     * @return средняя цена группы или NaN, если цен нет
+     */
+    public double average(int group) {
+        return priced[group] == 0 ? Double.NaN : (double) sums[group] / priced[group];
+    }
+
+    /**
+     * Добавляет продукт.
+     * @param product продукт
+     */
+    void add(Product product) {
+        Integer price = product.getPrice();
+        add(grouping.groupOf(product), price != null, price == null ? 0 : price);
+    }
+
+    /**
+     * Добавляет строку.
+     * @param group    порядковый номер значения или -1, если значения нет
+     * @param hasPrice задана ли цена
+     * @param value    цена
+     */
+    void add(int group, boolean hasPrice, int value) {
+        if (group < 0) group = counts.length - 1;
+        counts[group]++;
+        if (!hasPrice) return;
+        priced[group]++;
+        sums[group] += value;
+        if (value < mins[group]) mins[group] = value;
+        if (value > maxs[group]) maxs[group] = value;
+    }
+
+    /**
+     * Сворачивание части строк.
+     */
+    interface Rows {
+        void addTo(PriceAggregate part, int from, int to);
+    }
+
+    private PriceAggregate merge(PriceAggregate other) {
+        for (int group = 0; group < counts.length; group++) {
+            counts[group] += other.counts[group];
+            priced[group] += other.priced[group];
+            sums[group] += other.sums[group];
+            mins[group] = Math.min(mins[group], other.mins[group]);
+            maxs[group] = Math.max(maxs[group], other.maxs[group]);
+        }
+        return this;
+    }
+}
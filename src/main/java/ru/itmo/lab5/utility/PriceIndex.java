@@ -0,0 +1,174 @@
+package ru.itmo.lab5.utility;
+
+import ru.itmo.lab5.data.Product;
+
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Упорядоченный индекс продуктов по цене и названию (в порядке {@link Product#compareTo(Product)}).
+ * <p>
+ * Индекс хранит не сами продукты, а лёгкие ключи (цена, название, id): при равных
+ * цене и названии ключи различаются по id. Продукт без цены считается самым дешёвым.
+ * <p>
+ * Класс не потокобезопасен.
+ */
+public class PriceIndex {
+    private final TreeSet<Key> keys = new TreeSet<>();
+
+    /**
+     * Добавляет продукт в индекс.
+     * @param product продукт
+     */
+    public void add(Product product) {
+        keys.add(new Key(product));
+    }
+
+    /**
+     * Удаляет продукт из индекса.
+     * @param product продукт (с теми же ценой, названием и id, что при добавлении)
+     */
+    public void remove(Product product) {
+        keys.remove(new Key(product));
+    }
+
+    /**
+     * Удаляет из индекса пакет продуктов. Если пакет составляет заметную часть индекса,
+     * id пакета собираются в хеш-таблицу и индекс проходится по порядку один раз,
+     * без поиска каждого ключа от корня дерева.
+     * @param products продукты (с теми же ценами, названиями и id, что при добавлении)
+     */
+    public void removeAll(Product[] products) {
+        if (BatchRemoval.byLookup(products.length, keys.size())) {
+            for (Product product : products) remove(product);
+            return;
+        }
+        LongIntMap batch = new LongIntMap();
+        for (Product product : products) batch.put(product.getId(), 0);
+        keys.removeIf(key -> batch.get(key.id) >= 0);
+    }
+
+    /**
+     * Удаляет все ключи.
+     */
+    public void clear() {
+        keys.clear();
+    }
+
+    /**
+     * @return количество продуктов в индексе
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Удаляет из индекса все продукты, превышающие заданный. Получатель вызывается
+     * после удаления, поэтому может снова обращаться к индексу.
+     * @param bound   продукт, с которым сравниваются элементы
+     * @param removed получатель id удалённых продуктов
+     * @return количество удалённых продуктов
+     */
+    public int removeGreater(Product bound, LongConsumer removed) {
+        NavigableSet<Key> tail = keys.tailSet(new Key(price(bound), bound.getName(), Long.MAX_VALUE), false);
+        long[] ids = new long[tail.size()];
+        int count = 0;
+        for (Key key : tail) ids[count++] = key.id;
+        tail.clear();
+        for (long id : ids) removed.accept(id);
+        return count;
+    }
+
+    /**
+     * Обходит id продуктов, цена которых лежит в диапазоне [from, to], в порядке возрастания цены.
+     * Обход прекращается, как только действие вернёт false.
+     * @param from нижняя граница цены (включительно)
+     * @param to   верхняя граница цены (включительно)
+     * @param action действие над id продукта
+     */
+    public void forEachInRangeWhile(int from, int to, LongPredicate action) {
+        forEachInRangeWhile(from, to, null, action);
+    }
+
+    /**
+     * Обходит id продуктов, цена которых лежит в диапазоне [from, to] и которые стоят
+     * в индексе после заданного продукта, в порядке возрастания цены. Так обход можно
+     * продолжить с места, где он был прерван.
+     * Обход прекращается, как только действие вернёт false.
+     * @param from  нижняя граница цены (включительно)
+     * @param to    верхняя граница цены (включительно)
+     * @param after продукт, после которого начинается обход, или null, чтобы начать с from
+     * @param action действие над id продукта
+     */
+    public void forEachInRangeWhile(int from, int to, Product after, LongPredicate action) {
+        Key low = new Key(from, null, Long.MIN_VALUE);
+        Key high = new Key(to + 1L, null, Long.MIN_VALUE);
+        boolean inclusive = true;
+        if (after != null && new Key(after).compareTo(low) >= 0) {
+            low = new Key(after);
+            inclusive = false;
+        }
+        if (low.compareTo(high) >= 0) return;
+        for (Key key : keys.subSet(low, inclusive, high, false)) {
+            if (!action.test(key.id)) return;
+        }
+    }
+
+    /**
+     * @return итератор по ценам в порядке убывания (null для продуктов без цены)
+     */
+    public Iterator<Integer> descendingPrices() {
+        Iterator<Key> iterator = keys.descendingIterator();
+        return new Iterator<Integer>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Integer next() {
+                long price = iterator.next().price;
+                return price == Long.MIN_VALUE ? null : (int) price;
+            }
+        };
+    }
+
+    private static long price(Product product) {
+        return product.getPrice() == null ? Long.MIN_VALUE : product.getPrice();
+    }
+
+    /**
+     * Ключ индекса. Название null в границе диапазона меньше любого названия.
+     */
+    private static class Key implements Comparable<Key> {
+        private final long price;
+        private final String name;
+        private final long id;
+
+        private Key(Product product) {
+            this(price(product), product.getName(), product.getId());
+        }
+
+        private Key(long price, String name, long id) {
+            this.price = price;
+            this.name = name;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Key o) {
+            int result = Long.compare(price, o.price);
+            if (result != 0) return result;
+            if (name != o.name) {
+                if (name == null) return -1;
+                if (o.name == null) return 1;
+                result = name.compareTo(o.name);
+                if (result != 0) return result;
+            }
+            return Long.compare(id, o.id);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package ru.itmo.lab5.utility;
+
+import ru.itmo.lab5.data.Country;
+import ru.itmo.lab5.data.Product;
+import ru.itmo.lab5.data.UnitOfMeasure;
+import ru.itmo.lab5.managers.CollectionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Запрос к коллекции: набор условий на поля продукта, которые должны выполняться
+ * одновременно, и ограничение количества результатов.
+ * <p>
+ * Условие записывается без пробелов как {@code <поле><оператор><значение>}, условия
+ * разделяются пробелами, например {@code price>=10 price<100 unit=METERS name^=Мол limit=20}.
+ * Поля id, price, x и y сравниваются операторами =, <, <=, >, >=; unit и nationality
+ * проверяются на равенство; name — на равенство (=) или начало (^=).
+ * <p>
+ * Условия на id и цену сводятся к диапазонам, по которым запрос читает индекс ключей
+ * или индекс цен {@link CollectionManager}, проверяя остальные условия только
+ * на продуктах из диапазона. Из двух диапазонов выбирается более узкий; если диапазонов
+ * нет или в диапазон попадает больше {@value #SCAN_FRACTION}-й части коллекции,
+ * коллекция просматривается порциями с параллельной проверкой условий.
+ * Найденные продукты передаются получателю по мере поиска, и поиск прекращается,
+ * как только набрано ограничение.
+ */
+public class ProductQuery {
+    /**
+     * Способ выполнения запроса.
+     */
+    public enum Plan {
+        /** Диапазон индекса ключей */
+        KEY_INDEX,
+        /** Диапазон индекса цен */
+        PRICE_INDEX,
+        /** Параллельный просмотр всей коллекции */
+        SCAN
+    }
+
+    /** Доля коллекции, начиная с которой чтение индекса уступает параллельному просмотру */
+    private static final int SCAN_FRACTION = 4;
+
+    private static final Pattern CONDITION = Pattern.compile("([a-zA-Z]+)(<=|>=|\\^=|=|<|>)(.+)");
+
+    private long keyFrom = Long.MIN_VALUE;
+    private long keyTo = Long.MAX_VALUE;
+    private long priceFrom = Integer.MIN_VALUE;
+    private long priceTo = Integer.MAX_VALUE;
+    private boolean priceBounded;
+    private final List<Predicate<Product>> conditions = new ArrayList<>();
+    private int limit = Integer.MAX_VALUE;
+
+    private ProductQuery() {
+    }
+
+    /**
+     * Разбирает запрос.
+     * @param text условия через пробел
+     * @return запрос
+     * @throws IllegalArgumentException если условие записано неверно
+     */
+    public static ProductQuery parse(String text) {
+        ProductQuery query = new ProductQuery();
+        for (String token : text.trim().split("\\s+")) {
+            if (token.isEmpty()) continue;
+            Matcher matcher = CONDITION.matcher(token);
+            if (!matcher.matches()) throw new IllegalArgumentException("Неверное условие: " + token);
+            try {
+                query.add(matcher.group(1).toLowerCase(), matcher.group(2), matcher.group(3));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Неверное число в условии: " + token);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Выбирает способ выполнения запроса, оценивая размеры диапазонов по индексам.
+     * Оценка прекращается на пороге, так что стоит не больше чтения порога ключей.
+     * @param collectionManager менеджер коллекции
+     * @return способ, которым будет выполнен запрос
+     */
+    public Plan plan(CollectionManager collectionManager) {
+        int threshold = collectionManager.getSize() / SCAN_FRACTION + 1;
+        int keys = threshold;
+        int prices = threshold;
+        if (keyFrom != Long.MIN_VALUE || keyTo != Long.MAX_VALUE) {
+            keys = keyFrom > keyTo ? 0 : collectionManager.countByKey(keyFrom, keyTo, threshold);
+        }
+        if (priceBounded && keys > 0) {
+            prices = priceFrom > priceTo ? 0 : collectionManager.countByPrice((int) priceFrom, (int) priceTo, Math.min(keys, threshold));
+        }
+        if (keys >= threshold && prices >= threshold) return Plan.SCAN;
+        return keys <= prices ? Plan.KEY_INDEX : Plan.PRICE_INDEX;
+    }
+
+    /**
+     * @return наибольшее количество результатов
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return условие, которому удовлетворяют все результаты запроса
+     */
+    public Predicate<Product> toPredicate() {
+        List<Predicate<Product>> all = new ArrayList<>(conditions);
+        return product -> {
+            for (Predicate<Product> condition : all) {
+                if (!condition.test(product)) return false;
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Выполняет запрос, передавая найденные продукты получателю по мере поиска.
+     * @param collectionManager менеджер коллекции
+     * @param sink              получатель продуктов: в порядке ключей, а при чтении индекса цен — в порядке цены
+     * @return количество найденных продуктов
+     */
+    public int execute(CollectionManager collectionManager, Consumer<Product> sink) {
+        return execute(collectionManager, plan(collectionManager), sink);
+    }
+
+    /**
+     * Выполняет запрос заданным способом.
+     * @param collectionManager менеджер коллекции
+     * @param plan              способ выполнения
+     * @param sink              получатель продуктов
+     * @return количество найденных продуктов
+     */
+    public int execute(CollectionManager collectionManager, Plan plan, Consumer<Product> sink) {
+        Predicate<Product> filter = toPredicate();
+        switch (plan) {
+            case KEY_INDEX:
+                return keyFrom > keyTo ? 0 : collectionManager.findByKey(keyFrom, keyTo, filter, limit, sink);
+            case PRICE_INDEX:
+                return priceFrom > priceTo ? 0 : collectionManager.findByPrice((int) priceFrom, (int) priceTo, filter, limit, sink);
+            default:
+                return collectionManager.find(filter, limit, sink);
+        }
+    }
+
+    private void add(String field, String operator, String value) {
+        if (operator.equals("^=") && !field.equals("name")) throw new IllegalArgumentException("Оператор ^= применим только к названию");
+        switch (field) {
+            case "id": {
+                long bound = Long.parseLong(value);
+                narrowKeys(operator, bound);
+                conditions.add(product -> compare(product.getId(), bound, operator));
+                break;
+            }
+            case "price": {
+                int bound = Integer.parseInt(value);
+                narrowPrices(operator, bound);
+                conditions.add(product -> product.getPrice() != null && compare(product.getPrice(), bound, operator));
+                break;
+            }
+            case "x": {
+                int bound = Integer.parseInt(value);
+                conditions.add(product -> product.getCoordinates() != null && product.getCoordinates().getX() != null
+                        && compare(product.getCoordinates().getX(), bound, operator));
+                break;
+            }
+            case "y": {
+                double bound = Double.parseDouble(value);
+                conditions.add(product -> product.getCoordinates() != null && product.getCoordinates().getY() != null
+                        && compare(Double.compare(product.getCoordinates().getY(), bound), operator));
+                break;
+            }
+            case "unit": {
+                UnitOfMeasure unit = parseEnum(UnitOfMeasure.class, value, operator);
+                conditions.add(product -> product.getUnitOfMeasure() == unit);
+                break;
+            }
+            case "nationality": {
+                Country country = parseEnum(Country.class, value, operator);
+                conditions.add(product -> product.getOwner() != null && product.getOwner().getNationality() == country);
+                break;
+            }
+            case "name":
+                if (operator.equals("^=")) conditions.add(product -> product.getName() != null && product.getName().startsWith(value));
+                else if (operator.equals("=")) conditions.add(product -> value.equals(product.getName()));
+                else throw new IllegalArgumentException("Название сравнивается только операторами = и ^=");
+                break;
+            case "limit":
+                if (!operator.equals("=")) throw new IllegalArgumentException("Ограничение задаётся как limit=<число>");
+                limit = Integer.parseInt(value);
+                if (limit <= 0) throw new IllegalArgumentException("Ограничение должно быть больше нуля");
+                break;
+            default:
+                throw new IllegalArgumentException("Неизвестное поле: " + field);
+        }
+    }
+
+    private void narrowKeys(String operator, long bound) {
+        switch (operator) {
+            case "=":
+                keyFrom = Math.max(keyFrom, bound);
+                keyTo = Math.min(keyTo, bound);
+                break;
+            case "<":
+                if (bound == Long.MIN_VALUE) keyFrom = Long.MAX_VALUE;
+                keyTo = Math.min(keyTo, bound - 1);
+                break;
+            case "<=":
+                keyTo = Math.min(keyTo, bound);
+                break;
+            case ">":
+                if (bound == Long.MAX_VALUE) keyTo = Long.MIN_VALUE;
+                keyFrom = Math.max(keyFrom, bound + 1);
+                break;
+            case ">=":
+                keyFrom = Math.max(keyFrom, bound);
+                break;
+            default:
+                throw new IllegalArgumentException("Оператор " + operator + " не применим к id");
+        }
+    }
+
+    private void narrowPrices(String operator, int bound) {
+        priceBounded = true;
+        switch (operator) {
+            case "=":
+                priceFrom = Math.max(priceFrom, bound);
+                priceTo = Math.min(priceTo, bound);
+                break;
+            case "<":
+                priceTo = Math.min(priceTo, bound - 1L);
+                break;
+            case "<=":
+                priceTo = Math.min(priceTo, bound);
+                break;
+            case ">":
+                priceFrom = Math.max(priceFrom, bound + 1L);
+                break;
+            case ">=":
+                priceFrom = Math.max(priceFrom, bound);
+                break;
+            default:
+                throw new IllegalArgumentException("Оператор " + operator + " не применим к цене");
+        }
+    }
+
+    private static boolean compare(long value, long bound, String operator) {
+        return compare(Long.compare(value, bound), operator);
+    }
+
+    private static boolean compare(int comparison, String operator) {
+        switch (operator) {
+            case "=":
+                return comparison == 0;
+            case "<":
+                return comparison < 0;
+            case "<=":
+                return comparison <= 0;
+            case ">":
+                return comparison > 0;
+            case ">=":
+                return comparison >= 0;
+            default:
+                throw new IllegalArgumentException("Оператор " + operator + " не применим к числу");
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String operator) {
+        if (!operator.equals("=")) throw new IllegalArgumentException("Поле " + type.getSimpleName() + " сравнивается только на равенство");
+        try {
+            return Enum.valueOf(type, value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестное значение " + type.getSimpleName() + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.itmo.lab5.utility;
+
+import ru.itmo.lab5.data.Product;
+
+/**
+ * Хранилище продуктов коллекции по ключу.
+ * <p>
+ * Реализации не обязаны быть потокобезопасными и не обязаны возвращать тот же объект,
+ * который был положен: хранилище может держать данные в собственном представлении
+ * и собирать {@link Product} при чтении. Метод {@link #get(long)} может вызываться
+ * одновременно с изменением хранилища для оптимистичного чтения; в этом случае он
+ * может вернуть неверный результат или бросить {@link RuntimeException}, но не
+ * должен повреждать хранилище.
+ */
+public interface ProductStore {
+    /**
+     * @return количество продуктов
+     */
+    int size();
+
+    /**
+     * @param key ключ
+     * @return продукт или null, если ключа нет
+     */
+    Product get(long key);
+
+    /**
+     * Кладёт продукт по ключу.
+     * @param key     ключ
+     * @param product продукт (не null)
+     * @return предыдущее значение или null
+     */
+    Product put(long key, Product product);
+
+    /**
+     * Удаляет ключ.
+     * @param key ключ
+     * @return удалённое значение или null, если ключа не было
+     */
+    Product remove(long key);
+
+    /**
+     * Удаляет пакет ключей. Хранилище, которое собирает продукты при чтении,
+     * может удалять записи, не собирая их.
+     * @param keys ключи
+     */
+    default void removeAll(long[] keys) {
+        for (long key : keys) remove(key);
+    }
+
+    /**
+     * Удаляет все продукты.
+     */
+    void clear();
+
+    /**
+     * Считает статистику цен по группам. Хранилище, которое держит поля в примитивных
+     * массивах, считает её по ним, не собирая объекты продуктов.
+     * @param grouping поле группировки
+     * @return статистика цен
+     */
+    PriceAggregate aggregatePrices(PriceAggregate.Grouping grouping);
+}
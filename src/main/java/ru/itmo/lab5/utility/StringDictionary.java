@@ -0,0 +1,82 @@
+package ru.itmo.lab5.utility;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Словарь строк: каждой различной строке сопоставляется номер, и столбцы
+ * хранилища держат номера вместо ссылок на строки.
+ * <p>
+ * Словарь только пополняется: строки удалённых продуктов остаются в нём до очистки.
+ * Копия словаря разделяет с исходным только неизменяемые строки, а индекс
+ * строка → номер строит заново при первом пополнении.
+ * <p>
+ * Класс не потокобезопасен.
+ */
+public class StringDictionary {
+    private String[] strings;
+    private int size;
+    private Map<String, Integer> index;
+
+    public StringDictionary() {
+        this(new String[16], 0, new HashMap<>());
+    }
+
+    private StringDictionary(String[] strings, int size, Map<String, Integer> index) {
+        this.strings = strings;
+        this.size = size;
+        this.index = index;
+    }
+
+    /**
+     * Возвращает номер строки, добавляя её в словарь при необходимости.
+     * @param s строка
+     * @return номер строки или -1 для null
+     */
+    public int intern(String s) {
+        if (s == null) return -1;
+        if (index == null) {
+            index = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) index.put(strings[i], i);
+        }
+        Integer ref = index.get(s);
+        if (ref != null) return ref;
+
+        if (size == strings.length) strings = Arrays.copyOf(strings, size * 2);
+        strings[size] = s;
+        index.put(s, size);
+        return size++;
+    }
+
+    /**
+     * @param ref номер строки
+     * @return строка или null для номера -1
+     */
+    public String get(int ref) {
+        return ref < 0 ? null : strings[ref];
+    }
+
+    /**
+     * @return количество строк в словаре
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Удаляет все строки.
+     */
+    public void clear() {
+        strings = new String[16];
+        size = 0;
+        index = new HashMap<>();
+    }
+
+    /**
+     * @return независимая копия словаря
+     */
+    public StringDictionary copy() {
+        return new StringDictionary(Arrays.copyOf(strings, Math.max(size, 16)), size, null);
+    }
+}
@@ -0,0 +1,83 @@
+package ru.itmo.lab5.utility;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Пул строк для загрузки коллекции: для каждого содержимого хранится одна строка,
+ * и повторяющиеся значения (имена владельцев, номера паспортов, названия мест)
+ * разделяют один объект вместо копии в каждом продукте.
+ * <p>
+ * Строку можно искать прямо по фрагменту массива символов: если такая строка уже есть
+ * в пуле, новая не создаётся. Таблица с открытой адресацией и линейным пробированием
+ * использует тот же хеш, что и {@link String#hashCode()}, поэтому хеш найденной строки
+ * не пересчитывается.
+ * <p>
+ * В отличие от {@link String#intern()}, пул принадлежит загрузчику и освобождается
+ * вместе с ним. Новые строки можно пропускать через общий потокобезопасный
+ * справочник, чтобы пулы разных потоков одной загрузки разделяли одни и те же строки.
+ * Класс не потокобезопасен.
+ */
+public class StringPool {
+    private static final int MIN_CAPACITY = 64;
+
+    private final UnaryOperator<String> canonical;
+    private String[] table = new String[MIN_CAPACITY];
+    private int size;
+
+    public StringPool() {
+        this(UnaryOperator.identity());
+    }
+
+    /**
+     * @param canonical возвращает общую строку, равную новой строке пула
+     */
+    public StringPool(UnaryOperator<String> canonical) {
+        this.canonical = canonical;
+    }
+
+    /**
+     * Возвращает строку пула с содержимым chars[from, to), добавляя её при необходимости.
+     * @param chars символы
+     * @param from  начало фрагмента
+     * @param to    конец фрагмента (не включительно)
+     * @return строка пула
+     */
+    public String intern(char[] chars, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) hash = 31 * hash + chars[i];
+        int mask = table.length - 1;
+        int slot = spread(hash) & mask;
+        for (String s = table[slot]; s != null; s = table[slot]) {
+            if (s.hashCode() == hash && matches(s, chars, from, to)) return s;
+            slot = (slot + 1) & mask;
+        }
+        String s = canonical.apply(new String(chars, from, to - from));
+        table[slot] = s;
+        if (++size * 4 > table.length * 3) resize();
+        return s;
+    }
+
+    private static boolean matches(String s, char[] chars, int from, int to) {
+        if (s.length() != to - from) return false;
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i - from) != chars[i]) return false;
+        }
+        return true;
+    }
+
+    private void resize() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        int mask = table.length - 1;
+        for (String s : old) {
+            if (s == null) continue;
+            int slot = spread(s.hashCode()) & mask;
+            while (table[slot] != null) slot = (slot + 1) & mask;
+            table[slot] = s;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
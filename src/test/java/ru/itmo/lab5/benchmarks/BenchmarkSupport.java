@@ -0,0 +1,55 @@
+package ru.itmo.lab5.benchmarks;
+
+import ru.itmo.lab5.input.Console;
+import ru.itmo.lab5.managers.CollectionManager;
+import ru.itmo.lab5.managers.DumpManager;
+import ru.itmo.lab5.managers.JournalManager;
+import ru.itmo.lab5.utility.ProductStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Общие средства замеров: занятая куча после сборки мусора и менеджер коллекции
+ * во временном каталоге.
+ */
+final class BenchmarkSupport {
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Возвращает объём занятой кучи после нескольких сборок мусора.
+     * @return занятая куча в байтах
+     */
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Создаёт менеджер пустой коллекции с файлом и журналом во временном каталоге.
+     * @param directory временный каталог
+     * @param store     хранилище продуктов
+     * @return менеджер коллекции
+     */
+    static CollectionManager collectionManager(Path directory, ProductStore store) throws IOException {
+        Path file = Files.createFile(directory.resolve("collection.csv"));
+        Console console = new Console();
+        return new CollectionManager(new DumpManager(file.toString(), console),
+                new JournalManager(file + ".journal", console), store);
+    }
+
+    /**
+     * Удаляет временный каталог со всем содержимым.
+     * @param directory каталог
+     */
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
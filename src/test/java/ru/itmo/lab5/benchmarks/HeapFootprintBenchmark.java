@@ -0,0 +1,113 @@
+package ru.itmo.lab5.benchmarks;
+
+import ru.itmo.lab5.data.Color;
+import ru.itmo.lab5.data.Coordinates;
+import ru.itmo.lab5.data.Country;
+import ru.itmo.lab5.data.Location;
+import ru.itmo.lab5.data.Person;
+import ru.itmo.lab5.data.Product;
+import ru.itmo.lab5.data.UnitOfMeasure;
+import ru.itmo.lab5.input.Console;
+import ru.itmo.lab5.managers.DumpManager;
+import ru.itmo.lab5.utility.ColumnarProductStore;
+import ru.itmo.lab5.utility.LongProductMap;
+import ru.itmo.lab5.utility.OffHeapProductStore;
+import ru.itmo.lab5.utility.ProductStore;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Занятая куча на миллион продуктов.
+ * <p>
+ * Сначала коллекция записывается в CSV-файл и загружается через {@link DumpManager}
+ * каждым способом чтения в {@link LongProductMap}; замер включает продукты, разделяемые
+ * строки и владельцев, но не индексы менеджера. Кэш файла перед каждой загрузкой
+ * удаляется, чтобы читался сам CSV. Затем те же продукты кладутся в каждое хранилище
+ * напрямую. Владельцы повторяются: на {@value #OWNERS} владельцев приходятся все продукты.
+ * <p>
+ * Запуск:
+ * <pre>
+ * mvn -B test-compile
+ * java -Xmx4g -cp target/classes:target/test-classes ru.itmo.lab5.benchmarks.HeapFootprintBenchmark [количество] [load|store|all]
+ * </pre>
+ */
+public class HeapFootprintBenchmark {
+    private static final int DEFAULT_SIZE = 1_000_000;
+    private static final int OWNERS = 5000;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+        String kind = args.length > 1 ? args[1] : "all";
+
+        if (kind.equals("all") || kind.equals("load")) {
+            Path directory = Files.createTempDirectory("lab5-bench");
+            try {
+                Path file = directory.resolve("collection.csv");
+                new DumpManager(file.toString(), new Console()).writeCollection(products(size));
+                for (DumpManager.ReadMode mode : DumpManager.ReadMode.values()) measureLoad(file, mode);
+            } finally {
+                BenchmarkSupport.delete(directory);
+            }
+        }
+        if (kind.equals("all") || kind.equals("store")) {
+            measureStore("long", new LongProductMap(), size);
+            measureStore("columnar", new ColumnarProductStore(), size);
+            measureStore("offheap", new OffHeapProductStore(), size);
+        }
+    }
+
+    private static void measureLoad(Path file, DumpManager.ReadMode mode) throws Exception {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(file.getParent())) {
+            for (Path other : files) if (!other.equals(file)) Files.delete(other);
+        }
+        DumpManager dumpManager = new DumpManager(file.toString(), new Console());
+        dumpManager.setReadMode(mode);
+
+        long before = BenchmarkSupport.usedHeap();
+        LongProductMap store = new LongProductMap();
+        long start = System.nanoTime();
+        dumpManager.readCollection(product -> store.put(product.getId(), product), store::clear);
+        double load = (System.nanoTime() - start) / 1e6;
+        report("загрузка " + mode, BenchmarkSupport.usedHeap() - before, store.size(), load);
+    }
+
+    private static void measureStore(String name, ProductStore store, int size) {
+        long before = BenchmarkSupport.usedHeap();
+        List<Product> products = products(size);
+        long start = System.nanoTime();
+        for (Product product : products) store.put(product.getId(), product);
+        double fill = (System.nanoTime() - start) / 1e6;
+        products = null;
+        report("хранилище " + name, BenchmarkSupport.usedHeap() - before, store.size(), fill);
+    }
+
+    private static void report(String name, long retained, int count, double millis) {
+        System.out.printf("%-20s %d продуктов, %.1f Б/продукт, %.0f МБ на миллион, %.0f мс%n",
+                name, count, retained / (double) count, retained * 1e6 / count / (1 << 20), millis);
+    }
+
+    /**
+     * Создаёт продукты с общими владельцами, как после загрузки из файла.
+     */
+    private static List<Product> products(int size) {
+        Random random = new Random(1);
+        Person[] owners = new Person[OWNERS];
+        for (int i = 0; i < OWNERS; i++) {
+            owners[i] = new Person("owner " + i, "PASS" + i, Color.values()[i % Color.values().length],
+                    Country.values()[i % Country.values().length], new Location(i, i, "city " + i % 100));
+        }
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            products.add(new Product((long) i, "product " + i, new Coordinates(random.nextInt(1000), random.nextDouble() * 100),
+                    Instant.ofEpochMilli(1_700_000_000_000L + i), random.nextInt(1000) + 1, UnitOfMeasure.METERS,
+                    owners[random.nextInt(OWNERS)]));
+        }
+        return products;
+    }
+}
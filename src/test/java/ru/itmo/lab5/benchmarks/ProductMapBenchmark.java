@@ -0,0 +1,168 @@
+package ru.itmo.lab5.benchmarks;
+
+import ru.itmo.lab5.data.Coordinates;
+import ru.itmo.lab5.data.Product;
+import ru.itmo.lab5.data.UnitOfMeasure;
+import ru.itmo.lab5.managers.CollectionManager;
+import ru.itmo.lab5.utility.LongProductMap;
+import ru.itmo.lab5.utility.PriceAggregate;
+import ru.itmo.lab5.utility.ProductStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сравнение хранилищ коллекции по ключу: {@link Hashtable} (прежнее хранилище
+ * {@link CollectionManager}), {@link ConcurrentHashMap} и {@link LongProductMap}.
+ * <p>
+ * Для каждого хранилища замеряются память на запись (все записи ссылаются на один продукт,
+ * поэтому в замер входит только само хранилище), время вставки, поиска и проверки ключа.
+ * Затем те же операции замеряются через {@link CollectionManager#addToCollection(Product)},
+ * {@link CollectionManager#getById(long)} и {@link CollectionManager#contains(Long)}
+ * с хранилищем в менеджере; в эти замеры входят индексы и журнал изменений.
+ * Половина поисков промахивается.
+ * <p>
+ * Запуск:
+ * <pre>
+ * mvn -B test-compile
+ * java -Xmx4g -cp target/classes:target/test-classes ru.itmo.lab5.benchmarks.ProductMapBenchmark [количество] [hashtable|concurrent|long|all]
+ * </pre>
+ * Для точных времён хранилища лучше замерять по одному на запуск JVM.
+ */
+public class ProductMapBenchmark {
+    private static final int DEFAULT_SIZE = 1_000_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+        String kind = args.length > 1 ? args[1] : "all";
+
+        Random random = new Random(1);
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) keys[i] = 1 + (random.nextLong() & Long.MAX_VALUE) % (4L * size);
+        long[] lookups = new long[size];
+        for (int i = 0; i < size; i++) lookups[i] = i % 2 == 0 ? keys[random.nextInt(size)] : -1 - random.nextInt(size);
+
+        for (String name : new String[]{"hashtable", "concurrent", "long"}) {
+            if (kind.equals("all") || kind.equals(name)) {
+                measureStore(name, keys, lookups);
+                measureManager(name, keys, lookups);
+            }
+        }
+    }
+
+    private static ProductStore store(String name) {
+        switch (name) {
+            case "hashtable":
+                return new MapStore(new Hashtable<>());
+            case "concurrent":
+                return new MapStore(new ConcurrentHashMap<>());
+            default:
+                return new LongProductMap();
+        }
+    }
+
+    private static void measureStore(String name, long[] keys, long[] lookups) {
+        Product shared = product(1);
+        long before = BenchmarkSupport.usedHeap();
+        ProductStore store = store(name);
+        long start = System.nanoTime();
+        for (long key : keys) store.put(key, shared);
+        double put = (System.nanoTime() - start) / (double) keys.length;
+        long retained = BenchmarkSupport.usedHeap() - before;
+
+        int hits = 0;
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (long key : lookups) if (store.get(key) != null) hits++;
+        }
+        double get = (System.nanoTime() - start) / ((double) ROUNDS * lookups.length);
+
+        System.out.printf("%-10s хранилище: %d записей, %.1f Б/запись, put %.0f нс, get %.0f нс (найдено %d)%n",
+                name, store.size(), retained / (double) store.size(), put, get, hits / ROUNDS);
+    }
+
+    private static void measureManager(String name, long[] keys, long[] lookups) throws Exception {
+        List<Product> products = new ArrayList<>(keys.length);
+        for (long key : keys) products.add(product(key));
+
+        Path directory = Files.createTempDirectory("lab5-bench");
+        try {
+            CollectionManager collectionManager = BenchmarkSupport.collectionManager(directory, store(name));
+            long start = System.nanoTime();
+            for (Product product : products) collectionManager.addToCollection(product);
+            double add = (System.nanoTime() - start) / (double) products.size();
+
+            int hits = 0;
+            start = System.nanoTime();
+            for (int round = 0; round < ROUNDS; round++) {
+                for (long key : lookups) if (collectionManager.getById(key) != null) hits++;
+            }
+            double get = (System.nanoTime() - start) / ((double) ROUNDS * lookups.length);
+
+            start = System.nanoTime();
+            for (int round = 0; round < ROUNDS; round++) {
+                for (long key : lookups) if (collectionManager.contains(key)) hits++;
+            }
+            double contains = (System.nanoTime() - start) / ((double) ROUNDS * lookups.length);
+
+            System.out.printf("%-10s менеджер: addToCollection %.0f нс, getById %.0f нс, contains %.0f нс (найдено %d)%n",
+                    name, add, get, contains, hits / (2 * ROUNDS));
+        } finally {
+            BenchmarkSupport.delete(directory);
+        }
+    }
+
+    private static Product product(long id) {
+        return new Product(id, "product " + id, new Coordinates(1, 1.0), Instant.ofEpochMilli(1_700_000_000_000L),
+                (int) (id % 1000) + 1, UnitOfMeasure.METERS, null);
+    }
+
+    /**
+     * Хранилище поверх словаря с упакованными ключами, как было до {@link LongProductMap}.
+     */
+    private static class MapStore implements ProductStore {
+        private final Map<Long, Product> map;
+
+        private MapStore(Map<Long, Product> map) {
+            this.map = map;
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public Product get(long key) {
+            return map.get(key);
+        }
+
+        @Override
+        public Product put(long key, Product product) {
+            return map.put(key, product);
+        }
+
+        @Override
+        public Product remove(long key) {
+            return map.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public PriceAggregate aggregatePrices(PriceAggregate.Grouping grouping) {
+            return PriceAggregate.of(new ArrayList<>(map.values()), grouping);
+        }
+    }
+}